@@ -0,0 +1,243 @@
+package com.miaai.language_helper.config;
+
+import com.miaai.language_helper.util.LogRedactor;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Access-лог: одна строка key=value на запрос в логгер "access" (асинхронный appender, см. logback-spring.xml).
+ * Успешные быстрые запросы пишутся с вероятностью logging.access.sample-rate, ошибки и медленные - всегда.
+ * Тела запроса и ответа - только при DEBUG для "access" и с вероятностью logging.access.body-sample-rate,
+ * не больше logging.access.body-max-chars символов и через {@link LogRedactor}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    // Id пользователя выставляет JwtAuthFilter: к концу запроса SecurityContext уже очищен
+    public static final String USER_ID_ATTRIBUTE = AccessLogFilter.class.getName() + ".userId";
+
+    private static final Logger ACCESS = LoggerFactory.getLogger("access");
+
+    private final ClientIpResolver clientIpResolver;
+
+    @Value("${logging.access.enabled:true}")
+    private boolean enabled;
+
+    @Value("${logging.access.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${logging.access.slow-ms:1000}")
+    private long slowMs;
+
+    @Value("${logging.access.body-sample-rate:0.0}")
+    private double bodySampleRate;
+
+    @Value("${logging.access.body-max-chars:2048}")
+    private int bodyMaxChars;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!enabled || !ACCESS.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean captureBodies = ACCESS.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < bodySampleRate;
+        HttpServletRequest loggedRequest = captureBodies ? new ContentCachingRequestWrapper(request, bodyMaxChars) : request;
+        HttpServletResponse loggedResponse = captureBodies ? new CapturingResponse(response, bodyMaxChars) : response;
+
+        try {
+            filterChain.doFilter(loggedRequest, loggedResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // StreamingResponseBody и CompletableFuture: строка пишется, когда ответ действительно отправлен
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        log(loggedRequest, loggedResponse, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                log(loggedRequest, loggedResponse, start);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, HttpServletResponse response, long start) {
+        long micros = (System.nanoTime() - start) / 1_000;
+        int status = response.getStatus();
+        boolean always = status >= 400 || micros >= slowMs * 1_000;
+        if (!always && sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder(160)
+                .append("method=").append(request.getMethod())
+                .append(" uri=").append(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            line.append('?').append(LogRedactor.redact(request.getQueryString()));
+        }
+        line.append(" status=").append(status)
+                .append(" ms=").append(micros / 1_000).append('.').append(micros / 100 % 10);
+        Object userId = request.getAttribute(USER_ID_ATTRIBUTE);
+        if (userId != null) {
+            line.append(" user=").append(userId);
+        }
+        line.append(" ip=").append(clientIpResolver.resolve(request));
+        Object traceId = request.getAttribute(SlowRequestSpanFilter.TRACE_ID_ATTRIBUTE);
+        if (traceId != null) {
+            line.append(" trace=").append(traceId);
+        }
+        Object dominantSpan = request.getAttribute(SlowRequestSpanFilter.DOMINANT_SPAN_ATTRIBUTE);
+        if (dominantSpan != null) {
+            line.append(" dominant=").append(dominantSpan);
+        }
+
+        if (request instanceof ContentCachingRequestWrapper cachingRequest && response instanceof CapturingResponse capturingResponse) {
+            ACCESS.debug("{} reqBody=\"{}\" respBody=\"{}\"", line,
+                    body(cachingRequest.getContentAsByteArray(), request.getContentType()),
+                    body(capturingResponse.captured(), response.getContentType()));
+        } else {
+            ACCESS.info("{}", line);
+        }
+    }
+
+    private String body(byte[] content, String contentType) {
+        if (content.length == 0) {
+            return "";
+        }
+        if (!isTextual(contentType)) {
+            return "[" + contentType + ", " + content.length + "+ bytes]";
+        }
+        return LogRedactor.forLog(new String(content, StandardCharsets.UTF_8), bodyMaxChars);
+    }
+
+    private static boolean isTextual(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.contains("json") || type.startsWith("text/") || type.contains("x-www-form-urlencoded");
+    }
+
+    /**
+     * Пропускает ответ без изменений и запоминает только первые limit байт.
+     * В отличие от ContentCachingResponseWrapper не буферизует тело целиком (важно для экспорта и больших ответов).
+     */
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream captured;
+        private final int limit;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        private CapturingResponse(HttpServletResponse response, int limit) {
+            super(response);
+            this.limit = limit;
+            this.captured = new ByteArrayOutputStream(Math.min(limit, 1024));
+        }
+
+        private byte[] captured() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return captured.toByteArray();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        if (captured.size() < limit) {
+                            captured.write(b);
+                        }
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        int room = limit - captured.size();
+                        if (room > 0) {
+                            captured.write(b, off, Math.min(room, len));
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.miaai.language_helper.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Адрес клиента для троттлинга входа и access-лога. За nginx getRemoteAddr() - адрес прокси,
+ * настоящий адрес приходит в заголовке auth.client-ip-header (X-Real-IP в docker-профиле).
+ * Заголовок задаётся только там, где прокси его перезаписывает, иначе клиент подставит любой адрес.
+ */
+@Component
+public class ClientIpResolver {
+
+    @Value("${auth.client-ip-header:}")
+    private String clientIpHeader;
+
+    public String resolve(HttpServletRequest request) {
+        if (!clientIpHeader.isEmpty()) {
+            String forwarded = request.getHeader(clientIpHeader);
+            if (forwarded != null && !forwarded.isBlank()) {
+                return forwarded.trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,78 @@
+package com.miaai.language_helper.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Собственное время (без вложенных span) по имени span для каждого трейса. По нему SlowRequestSpanFilter
+ * определяет, на что ушло время медленного запроса: страницы OCR одного запроса суммируются под одним именем.
+ * Корневой span (запрос целиком) не учитывается.
+ */
+@Component
+public class DominantSpanTracker implements SpanProcessor {
+
+    public record DominantSpan(String name, long selfNanos) {
+    }
+
+    // Сумма длительностей завершённых детей по spanId родителя: дети завершаются раньше родителя
+    private final Cache<String, Long> childNanosBySpan = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+    private final Cache<String, Map<String, Long>> selfNanosByTrace = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        long latency = span.getLatencyNanos();
+        Long childNanos = childNanosBySpan.asMap().remove(span.getSpanContext().getSpanId());
+        SpanContext parent = span.getParentSpanContext();
+        if (!parent.isValid() || parent.isRemote()) {
+            return;
+        }
+        childNanosBySpan.asMap().merge(parent.getSpanId(), latency, Long::sum);
+        long selfNanos = Math.max(0, latency - (childNanos != null ? childNanos : 0));
+        selfNanosByTrace.get(span.getSpanContext().getTraceId(), traceId -> new ConcurrentHashMap<>())
+                .merge(span.getName(), selfNanos, Long::sum);
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    /**
+     * Span с наибольшим собственным временем в трейсе. Собранные данные трейса удаляются.
+     */
+    public Optional<DominantSpan> remove(String traceId) {
+        Map<String, Long> selfNanos = selfNanosByTrace.asMap().remove(traceId);
+        if (selfNanos == null) {
+            return Optional.empty();
+        }
+        return selfNanos.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(entry -> new DominantSpan(entry.getKey(), entry.getValue()));
+    }
+}
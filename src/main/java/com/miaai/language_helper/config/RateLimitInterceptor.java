@@ -0,0 +1,67 @@
+package com.miaai.language_helper.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaai.language_helper.config.auth.CurrentUserIdArgumentResolver;
+import com.miaai.language_helper.service.RateLimiter;
+import com.miaai.language_helper.service.RateLimiter.Decision;
+import com.miaai.language_helper.service.RateLimiter.EndpointClass;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Проверка RateLimiter перед LLM-эндпоинтами одного класса. Заголовки RateLimit-Limit / -Remaining / -Reset
+ * отдаются в каждом ответе, при превышении - 429 с Retry-After.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    static final String RATE_LIMIT_LIMIT = "RateLimit-Limit";
+    static final String RATE_LIMIT_REMAINING = "RateLimit-Remaining";
+    static final String RATE_LIMIT_RESET = "RateLimit-Reset";
+
+    private final RateLimiter rateLimiter;
+    private final CurrentUserIdArgumentResolver currentUserIdResolver;
+    private final ObjectMapper objectMapper;
+    private final EndpointClass endpointClass;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        // Лимит ведётся по id пользователя; для токенов без uid id ищется по email. Без id запрос не пропускается
+        Long userId = currentUserIdResolver.findCurrentUserId().orElse(null);
+        if (userId == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), Map.of("error", "Пользователь не найден"));
+            return false;
+        }
+
+        Decision decision = rateLimiter.tryAcquire(userId, endpointClass);
+        response.setHeader(RATE_LIMIT_LIMIT, String.valueOf(decision.limit()));
+        response.setHeader(RATE_LIMIT_REMAINING, String.valueOf(decision.remaining()));
+        response.setHeader(RATE_LIMIT_RESET, String.valueOf(decision.resetSeconds()));
+        if (decision.allowed()) {
+            return true;
+        }
+
+        log.warn("Rate limit exceeded for user {} on {}", userId, endpointClass);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.resetSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", "Слишком много запросов, повторите позже"));
+        return false;
+    }
+}
@@ -1,6 +1,7 @@
 package com.miaai.language_helper.config;
 
 import com.miaai.language_helper.service.JwtAuthFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -32,6 +33,12 @@ public class SecurityConfig {
     @Value("${spring.profiles.active:}")
     private String activeProfile;
 
+    @Value("${server.port:8080}")
+    private String serverPort;
+
+    @Value("${management.server.port:}")
+    private String managementPort;
+
     @Bean
     public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
         AuthenticationManagerBuilder authBuilder = http.getSharedObject(AuthenticationManagerBuilder.class);
@@ -41,15 +48,27 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        // Метрики открыты только на отдельном порту actuator (в docker 8081 не публикуется наружу),
+        // на основном порту их видит лишь ADMIN
+        boolean internalManagementPort = !managementPort.isEmpty() && !managementPort.equals(serverPort);
+        String[] monitoringEndpoints = internalManagementPort
+                ? new String[]{"/actuator/health", "/actuator/prometheus"}
+                : new String[]{"/actuator/health"};
+
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         // Публичные endpoint'ы
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // Повторный ASYNC-диспатч после StreamingResponseBody: запрос уже авторизован на REQUEST-диспатче,
+                        // а JwtAuthFilter (OncePerRequestFilter) на нём не выполняется
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/health", "/api/ready", "/api/debug/**", "/api/public/**").permitAll()
                         .requestMatchers("/api/authenticate", "/api/register").permitAll()
-                        .requestMatchers("/api/me", "/api/pdf/**", "/api/exercise/**", "/api/history/**").authenticated()
+                        .requestMatchers(monitoringEndpoints).permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        .requestMatchers("/api/me", "/api/pdf/**", "/api/upload/**", "/api/exercise/**", "/api/history/**").authenticated()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
@@ -72,10 +91,11 @@ public class SecurityConfig {
                 "https://95.81.126.8:*"    // если когда-нибудь добавишь HTTPS
         ));
 
-        configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(List.of("Authorization"));
+        configuration.setExposedHeaders(List.of("Authorization", "Location", "Upload-Offset", "Upload-Length",
+                "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset", "Retry-After"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -0,0 +1,63 @@
+package com.miaai.language_helper.config;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Медленный запрос помечается span, на который ушло больше всего собственного времени (см. {@link DominantSpanTracker}):
+ * атрибуты slow.dominant_span и slow.dominant_span.ms у span запроса и поле dominant= в access-логе.
+ * Работает внутри фильтра наблюдений Spring Boot (HIGHEST_PRECEDENCE + 1), пока span запроса ещё открыт.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+public class SlowRequestSpanFilter extends OncePerRequestFilter {
+
+    // Читаются AccessLogFilter: к моменту записи access-строки span запроса уже закрыт
+    public static final String TRACE_ID_ATTRIBUTE = SlowRequestSpanFilter.class.getName() + ".traceId";
+    public static final String DOMINANT_SPAN_ATTRIBUTE = SlowRequestSpanFilter.class.getName() + ".dominantSpan";
+
+    private final DominantSpanTracker dominantSpanTracker;
+
+    @Value("${tracing.slow-request-ms:1000}")
+    private long slowRequestMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Span span = Span.current();
+            SpanContext spanContext = span.getSpanContext();
+            // Асинхронный запрос ещё выполняется: данные трейса истекут из кэша трекера сами
+            if (spanContext.isValid() && !request.isAsyncStarted()) {
+                request.setAttribute(TRACE_ID_ATTRIBUTE, spanContext.getTraceId());
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                dominantSpanTracker.remove(spanContext.getTraceId())
+                        .filter(dominant -> elapsedMs >= slowRequestMs)
+                        .ifPresent(dominant -> {
+                            long dominantMs = TimeUnit.NANOSECONDS.toMillis(dominant.selfNanos());
+                            span.setAttribute("slow", true);
+                            span.setAttribute("slow.dominant_span", dominant.name());
+                            span.setAttribute("slow.dominant_span.ms", dominantMs);
+                            request.setAttribute(DOMINANT_SPAN_ATTRIBUTE, dominant.name() + ":" + dominantMs + "ms");
+                        });
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.miaai.language_helper.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Экспорт трейсов. OTLP (Jaeger, Tempo, collector) Spring Boot подключает сам, если задан
+ * management.otlp.tracing.endpoint. Без коллектора span можно писать в лог: tracing.logging-exporter.enabled=true.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.logging-exporter.enabled", havingValue = "true")
+    public LoggingSpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -0,0 +1,40 @@
+package com.miaai.language_helper.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaai.language_helper.config.auth.CurrentUserIdArgumentResolver;
+import com.miaai.language_helper.service.RateLimiter;
+import com.miaai.language_helper.service.RateLimiter.EndpointClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final CurrentUserIdArgumentResolver currentUserIdArgumentResolver;
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserIdArgumentResolver);
+    }
+
+    // LLM-эндпоинты: генерация упражнений и распознавание сканов лимитируются отдельно.
+    // Загрузка по чанкам лимитируется при создании: OCR стартует с последним чанком, до finalize
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, currentUserIdArgumentResolver, objectMapper,
+                        EndpointClass.GENERATION))
+                .addPathPatterns("/api/exercise/truefalse", "/api/exercise/abcd",
+                        "/api/exercise/open", "/api/exercise/dialogue");
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, currentUserIdArgumentResolver, objectMapper,
+                        EndpointClass.OCR))
+                .addPathPatterns("/api/pdf/upload", "/api/upload");
+    }
+}
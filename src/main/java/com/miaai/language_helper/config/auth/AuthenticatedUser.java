@@ -0,0 +1,15 @@
+package com.miaai.language_helper.config.auth;
+
+import java.security.Principal;
+
+/**
+ * Principal, собранный из проверенных claims JWT без обращения к БД.
+ * getName() возвращает email - контроллеры по-прежнему берут владельца через authentication.getName().
+ */
+public record AuthenticatedUser(Long id, String email) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
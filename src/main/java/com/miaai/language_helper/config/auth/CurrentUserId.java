@@ -0,0 +1,15 @@
+package com.miaai.language_helper.config.auth;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Параметр контроллера типа Long получает id аутентифицированного пользователя из SecurityContext.
+ * Для токенов с claim uid обращения к БД нет.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUserId {
+}
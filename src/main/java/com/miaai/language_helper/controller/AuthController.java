@@ -1,80 +1,96 @@
 package com.miaai.language_helper.controller;
 
+import com.miaai.language_helper.config.ClientIpResolver;
 import com.miaai.language_helper.config.auth.AuthRequest;
 import com.miaai.language_helper.config.auth.AuthResponse;
 import com.miaai.language_helper.config.auth.UserInfoDto;
 import com.miaai.language_helper.model.User;
 import com.miaai.language_helper.repository.UserRepository;
 import com.miaai.language_helper.service.JwtService;
+import com.miaai.language_helper.service.LoginService;
+import com.miaai.language_helper.service.LoginService.LoginOverloadedException;
+import com.miaai.language_helper.service.LoginService.LoginThrottledException;
 import com.miaai.language_helper.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api")
 public class AuthController {
 
-    private final AuthenticationManager authenticationManager;
+    private final LoginService loginService;
     private final UserService userService;
     private final JwtService jwtService;
-    private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final ClientIpResolver clientIpResolver;
 
+    // Пароль проверяется в пуле LoginService; поток Tomcat освобождается до окончания хэширования
     @PostMapping("/authenticate")
-    public ResponseEntity<AuthResponse> authenticate(@RequestBody AuthRequest authRequest) {
-        log.info("Authenticating user with email: {}", authRequest.getEmail());
+    public CompletableFuture<ResponseEntity<AuthResponse>> authenticate(@RequestBody AuthRequest authRequest,
+                                                                        HttpServletRequest request) {
 
         try {
-            // Аутентификация через AuthenticationManager
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            authRequest.getEmail(),
-                            authRequest.getPassword()
-                    )
-            );
-
-            // После успешной аутентификации получаем пользователя
-            User authUser = userService.findUserByEmail(authRequest.getEmail())
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
-            String token = jwtService.generateToken(authentication);
-
-            return ResponseEntity.ok(AuthResponse.builder()
-                    .id(authUser.getId())
-                    .email(authUser.getEmail())
-                    .username(authUser.getUsername())
-                    .token(token)
-                    .build());
-
-        } catch (AuthenticationException ex) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+            return loginService.authenticate(authRequest.getEmail(), authRequest.getPassword(), clientIpResolver.resolve(request))
+                    .thenApply(authentication -> {
+                        // После успешной аутентификации получаем пользователя
+                        User authUser = userService.findUserByEmail(authRequest.getEmail())
+                                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+                        String token = jwtService.generateToken(authentication, authUser);
+
+                        return ResponseEntity.ok(AuthResponse.builder()
+                                .id(authUser.getId())
+                                .email(authUser.getEmail())
+                                .username(authUser.getUsername())
+                                .token(token)
+                                .build());
+                    })
+                    .exceptionally(error -> {
+                        if (LoginService.unwrap(error) instanceof AuthenticationException) {
+                            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                    .body(AuthResponse.builder()
+                                            .error("Неверные учетные данные")
+                                            .build());
+                        }
+                        log.error("Login failed for {}", authRequest.getEmail(), error);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                    });
+
+        } catch (LoginThrottledException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
                     .body(AuthResponse.builder()
-                            .error("Неверные учетные данные")
-                            .build());
+                            .error("Слишком много неудачных попыток входа, попробуйте позже")
+                            .build()));
+        } catch (LoginOverloadedException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(AuthResponse.builder()
+                            .error("Сервер перегружен, повторите вход через секунду")
+                            .build()));
         }
     }
 
     @PostMapping("/register")
     public ResponseEntity<AuthResponse> register(@RequestBody AuthRequest authRequest) {
-        log.info("Registering new user with email: {}", authRequest);
 
         try {
             User user = userService.registerUser(authRequest.getUsername(), authRequest.getEmail(), authRequest.getPassword());
-            String token = jwtService.generateToken(user.getEmail());
-            log.info(String.valueOf(user));
+            String token = jwtService.generateToken(user, List.of("ROLE_USER"));
             User registredUser = userRepository.findByEmail(authRequest.getEmail()).get();
-            log.info(String.valueOf(registredUser));
 
             return ResponseEntity.ok(AuthResponse.builder()
                     .id(registredUser.getId())
@@ -91,12 +107,6 @@ public class AuthController {
 
 
 
-    }
-    private boolean checkPassword(String rawPassword, String encodedPassword) {
-
-        log.info(passwordEncoder.encode(rawPassword));
-        log.info(encodedPassword);
-        return rawPassword.equals(encodedPassword);
     }
     @GetMapping("/me")
     public ResponseEntity<UserInfoDto> getCurrentUser(Authentication authentication) {
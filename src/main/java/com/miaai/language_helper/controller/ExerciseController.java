@@ -1,29 +1,38 @@
 package com.miaai.language_helper.controller;  // Твой пакет
 
+import com.miaai.language_helper.config.auth.CurrentUserId;
 import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.dto.ExerciseImportResult;
+import com.miaai.language_helper.dto.ExercisePatchRequest;
 import com.miaai.language_helper.dto.ExerciseSaveRequest;
+import com.miaai.language_helper.dto.ExerciseSummaryDto;
 import com.miaai.language_helper.dto.ExerciseType;
 import com.miaai.language_helper.dto.generation.GenerationExerciseDto;
-import com.miaai.language_helper.dto.generation.TrueFalseGenerationDto;
-import com.miaai.language_helper.dto.ocr.FillTheGapsResponseDto;
-import com.miaai.language_helper.dto.ocr.MatchTheSentenceResponseDto;
 import com.miaai.language_helper.model.ExerciseTableRecord;
 import com.miaai.language_helper.model.User;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository;
 import com.miaai.language_helper.repository.ExerciseRepository;
-import com.miaai.language_helper.repository.UserRepository;
+import com.miaai.language_helper.service.ExerciseImportService;
 import com.miaai.language_helper.service.GptRequestService;
+import com.miaai.language_helper.service.PublicExerciseCache;
+import com.miaai.language_helper.service.PublicSnapshotPublisher;
 import com.miaai.language_helper.service.UserService;
+import com.miaai.language_helper.util.ExerciseSaveRequestConverter;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -33,30 +42,35 @@ import java.util.stream.Collectors;
 public class ExerciseController {
     private final GptRequestService gptRequestService;
     private final ExerciseRepository exerciseRepository;
-    private final UserRepository userRepository;
+    private final ExerciseJdbcRepository exerciseJdbcRepository;
     private final UserService userService;
+    private final PublicExerciseCache publicExerciseCache;
+    private final PublicSnapshotPublisher snapshotPublisher;
+    private final ExerciseSaveRequestConverter exerciseSaveRequestConverter;
+    private final ExerciseImportService exerciseImportService;
+
+    @Value("${exercise.bulk.max-size:500}")
+    private int maxBulkSize;
 
     @PostMapping("/save")
     public ResponseEntity<?> saveExercise(
             @RequestBody ExerciseSaveRequest exerciseRequest,
-            Authentication authentication) {
+            @CurrentUserId Long userId) {
         if (exerciseRequest == null) {
             log.warn("Null exercise request received");
             return ResponseEntity.badRequest().body(Map.of("error", "Request body is required"));
         }
 
         try {
-            String email = authentication.getName();
-            User user = userService.findUserByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userService.getReference(userId);
 
-            ExerciseDto exerciseDto = convertToExerciseDto(exerciseRequest);
+            ExerciseDto exerciseDto = exerciseSaveRequestConverter.toExerciseDto(exerciseRequest);
 
             ExerciseTableRecord exerciseRecord = ExerciseTableRecord.fromDto(exerciseDto, user);
 
             exerciseRepository.save(exerciseRecord);
 
-            log.info("Exercise saved successfully for user {} with UUID {}", user.getEmail(), exerciseRecord.getUuidAsString());
+            log.debug("Exercise saved for user {} with UUID {}", userId, exerciseRecord.getUuidAsString());
 
             return ResponseEntity.ok(Map.of(
                     "message", "Exercise saved successfully",
@@ -70,122 +84,106 @@ public class ExerciseController {
         }
     }
 
-    // Метод convertToExerciseDto нужно обновить для поддержки новых типов упражнений
-    private ExerciseDto convertToExerciseDto(ExerciseSaveRequest request) {
-        switch (request.getType()) {
-            case "True/False":
-                TrueFalseGenerationDto trueFalseDto = TrueFalseGenerationDto.builder()
-                        .type("True/False")
-                        .createdText(request.getCreatedText())
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertCreationDictionary(request.getDictionary()))
-                        .metadata(request.getMetadata())
-                        .build();
-                return trueFalseDto;
-
-            case "Fill The Gaps":
-                return FillTheGapsResponseDto.builder()
-                        .type("Fill The Gaps")
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertFillTheGapsDictionary(request.getDictionary()))
-                        .createdText(request.getCreatedText())
-                        .metadata(request.getMetadata())
-                        .build();
-
-            case "Match The Sentence":
-                return MatchTheSentenceResponseDto.builder()
-                        .type("Match The Sentence")
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertMatchTheSentenceDictionary(request.getDictionary()))
-                        .createdText(request.getCreatedText())
-                        .metadata(request.getMetadata())
-                        .build();
-
-            case "ABCD":
-                // Создаем DTO для ABCD упражнений
-                return TrueFalseGenerationDto.builder()
-                        .type("ABCD")
-                        .createdText(request.getCreatedText())
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertCreationDictionary(request.getDictionary()))
-                        .metadata(request.getMetadata())
-                        .build();
-
-            case "Open Questions":
-                // Создаем DTO для Open Questions упражнений
-                return TrueFalseGenerationDto.builder()
-                        .type("Open Questions")
-                        .createdText(request.getCreatedText())
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertCreationDictionary(request.getDictionary()))
-                        .metadata(request.getMetadata())
-                        .build();
-
-            case "Dialogue":
-                // Создаем DTO для Dialogue упражнений
-                return TrueFalseGenerationDto.builder()
-                        .type("Dialogue")
-                        .createdText(request.getCreatedText())
-                        .questions(request.getQuestions())
-                        .answers(request.getAnswers())
-                        .dictionary(convertCreationDictionary(request.getDictionary()))
-                        .metadata(request.getMetadata())
-                        .build();
-
-            default:
-                throw new IllegalArgumentException("Unknown exercise type: " + request.getType());
+    // Сохранение нескольких упражнений за раз: одна транзакция, INSERT'ы уходят пакетами (hibernate.jdbc.batch_size)
+    @PostMapping("/save-bulk")
+    public ResponseEntity<?> saveExercises(
+            @RequestBody List<ExerciseSaveRequest> exerciseRequests,
+            @CurrentUserId Long userId) {
+        if (exerciseRequests == null || exerciseRequests.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Request body is required"));
         }
-    }
+        if (exerciseRequests.size() > maxBulkSize) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Too many exercises, max " + maxBulkSize));
+        }
+
+        try {
+            User user = userService.getReference(userId);
+
+            List<ExerciseTableRecord> records = new ArrayList<>(exerciseRequests.size());
+            for (int i = 0; i < exerciseRequests.size(); i++) {
+                ExerciseSaveRequest request = exerciseRequests.get(i);
+                try {
+                    records.add(ExerciseTableRecord.fromDto(exerciseSaveRequestConverter.toExerciseDto(request), user));
+                } catch (RuntimeException e) {
+                    return ResponseEntity.badRequest().body(Map.of(
+                            "error", "Invalid exercise at index " + i + ": " + e.getMessage()));
+                }
+            }
+
+            exerciseRepository.saveAll(records);
+
+            List<String> uuids = records.stream().map(ExerciseTableRecord::getUuidAsString).collect(Collectors.toList());
+            log.debug("Saved {} exercises for user {}", uuids.size(), userId);
 
-    private List<GenerationExerciseDto.DictionaryEntry> convertCreationDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
-        if (dictionary == null) return Collections.emptyList();
-        return dictionary.stream().map(entry -> {
-            GenerationExerciseDto.DictionaryEntry dictEntry = new GenerationExerciseDto.DictionaryEntry();
-            dictEntry.setQuestion(entry.getQuestionIndex() != null ? entry.getQuestionIndex().toString() : entry.getQuestion());
-            dictEntry.setAnswer(entry.getAnswerIndex() != null ? entry.getAnswerIndex().toString() : entry.getAnswer());
-            return dictEntry;
-        }).collect(Collectors.toList());
+            return ResponseEntity.ok(Map.of(
+                    "message", "Exercises saved successfully",
+                    "uuids", uuids
+            ));
+
+        } catch (Exception e) {
+            log.error("Error saving exercises", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to save exercises: " + e.getMessage()));
+        }
     }
 
-    private List<FillTheGapsResponseDto.DictionaryEntry> convertFillTheGapsDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
-        if (dictionary == null) return Collections.emptyList();
-        return dictionary.stream().map(entry -> {
-            FillTheGapsResponseDto.DictionaryEntry dictEntry = new FillTheGapsResponseDto.DictionaryEntry();
-            if (entry.getQuestionIndex() != null) {
-                dictEntry.setQuestion(entry.getQuestionIndex());
-            } else if (entry.getQuestion() != null) {
-                dictEntry.setQuestion(Integer.parseInt(entry.getQuestion()));
-            }
-            if (entry.getAnswerIndex() != null) {
-                dictEntry.setAnswer(entry.getAnswerIndex());
-            } else if (entry.getAnswer() != null) {
-                dictEntry.setAnswer(Integer.parseInt(entry.getAnswer()));
-            }
-            return dictEntry;
-        }).collect(Collectors.toList());
+    // Пакетный импорт: тело запроса - NDJSON (по строке на упражнение) или ZIP, в том числе архив из /api/history/export.
+    // Читается потоком, ответ - число импортированных и ошибки по строкам
+    @PostMapping("/import")
+    public ResponseEntity<?> importExercises(
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletRequest request,
+            @CurrentUserId Long userId) {
+        String contentType = request.getContentType() != null ? request.getContentType() : "";
+        boolean zip = format != null ? "zip".equalsIgnoreCase(format) : contentType.startsWith("application/zip");
+        if (format != null && !zip && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported format: " + format));
+        }
+
+        try {
+            User user = userService.getReference(userId);
+
+            ExerciseImportResult result = zip
+                    ? exerciseImportService.importZip(request.getInputStream(), user)
+                    : exerciseImportService.importNdjson(request.getInputStream(), user);
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            log.error("Error importing exercises", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to import exercises: " + e.getMessage()));
+        }
     }
 
-    private List<MatchTheSentenceResponseDto.DictionaryEntry> convertMatchTheSentenceDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
-        if (dictionary == null) return Collections.emptyList();
-        return dictionary.stream().map(entry -> {
-            MatchTheSentenceResponseDto.DictionaryEntry dictEntry = new MatchTheSentenceResponseDto.DictionaryEntry();
-            if (entry.getQuestionIndex() != null) {
-                dictEntry.setQuestion(entry.getQuestionIndex());
-            } else if (entry.getQuestion() != null) {
-                dictEntry.setQuestion(Integer.parseInt(entry.getQuestion()));
-            }
-            if (entry.getAnswerIndex() != null) {
-                dictEntry.setAnswer(entry.getAnswerIndex());
-            } else if (entry.getAnswer() != null) {
-                dictEntry.setAnswer(Integer.parseInt(entry.getAnswer()));
+    // Частичное изменение: вопросы/ответы по индексу и metadata правятся в JSONB на стороне БД
+    @PatchMapping("/{uuid}")
+    public ResponseEntity<?> patchExercise(
+            @PathVariable String uuid,
+            @RequestBody ExercisePatchRequest patchRequest,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            UUID exerciseUuid = UUID.fromString(uuid);
+            Optional<ExerciseSummaryDto> updated = exerciseJdbcRepository.patch(email, exerciseUuid, patchRequest);
+            publicExerciseCache.invalidate(exerciseUuid);
+            snapshotPublisher.refresh(exerciseUuid);
+            if (updated.isEmpty()) {
+                log.warn("Patch target not found for {} / {}", uuid, email);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Exercise not found or index out of range"));
             }
-            return dictEntry;
-        }).collect(Collectors.toList());
+            return ResponseEntity.ok(updated.get());
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (InvalidDataAccessApiUsageException e) {
+            // IllegalArgumentException из репозитория приходит обёрнутым трансляцией исключений Spring
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMostSpecificCause().getMessage()));
+        } catch (Exception e) {
+            log.error("Error patching exercise {}", uuid, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to update exercise: " + e.getMessage()));
+        }
     }
 
 
@@ -194,8 +192,8 @@ public class ExerciseController {
             @RequestParam String level,
             @RequestParam String age,
             @RequestParam String topic,
-            Authentication authentication) {
-        return createExercise(ExerciseType.TRUEFALSE, level, age, topic, authentication);
+            @CurrentUserId Long userId) {
+        return createExercise(ExerciseType.TRUEFALSE, level, age, topic, userId);
     }
 
     @GetMapping("/abcd")
@@ -203,8 +201,8 @@ public class ExerciseController {
             @RequestParam String level,
             @RequestParam String age,
             @RequestParam String topic,
-            Authentication authentication) {
-        return createExercise(ExerciseType.ABCD, level, age, topic, authentication);
+            @CurrentUserId Long userId) {
+        return createExercise(ExerciseType.ABCD, level, age, topic, userId);
     }
 
     @GetMapping("/open")
@@ -212,8 +210,8 @@ public class ExerciseController {
             @RequestParam String level,
             @RequestParam String age,
             @RequestParam String topic,
-            Authentication authentication) {
-        return createExercise(ExerciseType.OPENQUESTIONS, level, age, topic, authentication);
+            @CurrentUserId Long userId) {
+        return createExercise(ExerciseType.OPENQUESTIONS, level, age, topic, userId);
     }
 
     @GetMapping("/dialogue")
@@ -221,26 +219,20 @@ public class ExerciseController {
             @RequestParam String level,
             @RequestParam String age,
             @RequestParam String topic,
-            Authentication authentication) {
-        return createExercise(ExerciseType.DIALOGUE, level, age, topic, authentication);
+            @CurrentUserId Long userId) {
+        return createExercise(ExerciseType.DIALOGUE, level, age, topic, userId);
     }
 
-    private ResponseEntity<?> createExercise(ExerciseType exerciseType, String level, String age, String topic, Authentication authentication) {
+    private ResponseEntity<?> createExercise(ExerciseType exerciseType, String level, String age, String topic, Long userId) {
         try {
-            String email = authentication.getName();
-            log.info("Creating {} exercise for user email: {}, level: {}, age: {}, topic: {}",
-                    exerciseType.getName(), email, level, age, topic);
-            Optional<User> userOpt = userRepository.findByEmail(email);
-            if (userOpt.isEmpty()) {
-                log.warn("User not found for email: {}", email);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not found");
-            }
-            User user = userOpt.get();
+            log.debug("Creating {} exercise for user {}, level: {}, age: {}, topic: {}",
+                    exerciseType.getName(), userId, level, age, topic);
+            User user = userService.getReference(userId);
 
             GenerationExerciseDto createdExercise = gptRequestService.createExerciseWithParams(
                     exerciseType, user, level, age, topic);
 
-            log.info("Created {} exercise for user {}: {}", exerciseType.getName(), user.getEmail(), createdExercise);
+            log.debug("Created {} exercise for user {}", exerciseType.getName(), userId);
             return ResponseEntity.ok(createdExercise);
         } catch (Exception e) {
             log.error("Error creating {} exercise", exerciseType.getName(), e);
@@ -0,0 +1,124 @@
+package com.miaai.language_helper.controller;
+
+import com.miaai.language_helper.dto.ExerciseHistoryPage;
+import com.miaai.language_helper.dto.ExerciseSearchHit;
+import com.miaai.language_helper.dto.ExerciseSummaryDto;
+import com.miaai.language_helper.repository.ExerciseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Полнотекстовый поиск по тексту упражнений (created_text) через GIN-индекс idx_exercises_created_text.
+ * Результаты отсортированы по релевантности (ts_rank), страницы - keyset по (rank, id).
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class ExerciseSearchController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private final ExerciseRepository exerciseRepository;
+
+    // Поиск по своим упражнениям
+    @GetMapping("/history/search")
+    public ResponseEntity<ExerciseHistoryPage> searchOwn(@RequestParam("q") String query,
+                                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                                         @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                         Authentication authentication) {
+        String email = authentication.getName();
+        return search(query, cursor, limit, (text, position, fetchLimit) -> position == null
+                ? exerciseRepository.searchOwn(email, text, fetchLimit)
+                : exerciseRepository.searchOwnAfter(email, text, position.rank(), position.id(), fetchLimit));
+    }
+
+    // Поиск по публичным упражнениям, без авторизации
+    @GetMapping("/public/search")
+    public ResponseEntity<ExerciseHistoryPage> searchPublic(@RequestParam("q") String query,
+                                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                                            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return search(query, cursor, limit, (text, position, fetchLimit) -> position == null
+                ? exerciseRepository.searchPublic(text, fetchLimit)
+                : exerciseRepository.searchPublicAfter(text, position.rank(), position.id(), fetchLimit));
+    }
+
+    private ResponseEntity<ExerciseHistoryPage> search(String query, String cursor, int limit, SearchQuery searchQuery) {
+        String text = query == null ? "" : query.strip();
+        if (text.isEmpty() || text.length() > MAX_QUERY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            SearchCursor position = cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor);
+
+            // Берём на одну запись больше, чтобы понять, есть ли следующая страница
+            List<ExerciseSearchHit> rows = searchQuery.find(text, position, pageSize + 1);
+            boolean hasMore = rows.size() > pageSize;
+            List<ExerciseSearchHit> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+            List<ExerciseSummaryDto> items = page.stream()
+                    .map(row -> ExerciseSummaryDto.builder()
+                            .uuid(row.getUuid().toString())
+                            .type(row.getType())
+                            .timestamp(row.getCreatedAt())
+                            .contentPreview(row.getContentPreview())
+                            .questionsCount(row.getQuestionsCount())
+                            .isPublic(Boolean.TRUE.equals(row.getIsPublic()))
+                            .highlight(row.getHighlight())
+                            .build())
+                    .collect(Collectors.toList());
+
+            String nextCursor = null;
+            if (hasMore) {
+                ExerciseSearchHit last = page.get(page.size() - 1);
+                nextCursor = new SearchCursor(last.getRank(), last.getId()).encode();
+            }
+            return ResponseEntity.ok(new ExerciseHistoryPage(items, nextCursor));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid search cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error searching exercises for '{}'", text, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SearchQuery {
+        List<ExerciseSearchHit> find(String text, SearchCursor position, int fetchLimit);
+    }
+
+    // Курсор - ранг и id последней выданной записи, в URL-безопасном base64
+    private record SearchCursor(float rank, long id) {
+        String encode() {
+            String raw = rank + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new SearchCursor(Float.parseFloat(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
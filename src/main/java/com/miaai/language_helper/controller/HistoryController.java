@@ -1,23 +1,37 @@
 package com.miaai.language_helper.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.dto.ExerciseDetailView;
+import com.miaai.language_helper.dto.ExerciseFilter;
+import com.miaai.language_helper.dto.ExerciseFilterPage;
+import com.miaai.language_helper.dto.ExerciseHistoryPage;
 import com.miaai.language_helper.dto.ExerciseSummaryDto;
-import com.miaai.language_helper.model.ExerciseTableRecord;
+import com.miaai.language_helper.dto.ExerciseSummaryView;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository;
 import com.miaai.language_helper.repository.ExerciseRepository;
+import com.miaai.language_helper.service.ExerciseExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -29,59 +43,23 @@ import java.util.stream.Collectors;
 public class HistoryController {
 
     private final ExerciseRepository exerciseRepository;
-    private final ObjectMapper objectMapper;  // ← Для сериализации exerciseData
+    private final ExerciseJdbcRepository exerciseJdbcRepository;
+    private final ExerciseExportService exerciseExportService;
 
-    // 1. Список заданий (summary)
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // 1. Список заданий (summary). exerciseData отдаётся из JSONB как есть, без разбора в DTO
     @GetMapping("/getTasks")
     public ResponseEntity<List<ExerciseSummaryDto>> getUserExercises(Authentication authentication) {
         try {
             String email = authentication.getName();
-            log.info("Fetching exercises for user email: {}", email);
-
-            List<ExerciseTableRecord> exercises = exerciseRepository.findByUser_Email(email);
-            log.info("Found {} exercises for user {}", exercises.size(), email);
-
-            List<ExerciseSummaryDto> summaryList = exercises.stream()
-                    .map(exercise -> {
-                        ExerciseDto exerciseDto = exercise.getExercise();
-                        String type = "Unknown";
-                        String contentPreview = "";
-
-                        if (exerciseDto != null) {
-                            type = exerciseDto.getExerciseType();
-                            contentPreview = getContentPreview(
-                                    exerciseDto.getCreatedText() != null
-                                            ? exerciseDto.getCreatedText()
-                                            : (exerciseDto.getQuestions() != null ? exerciseDto.getQuestions().toString() : "")
-                            );
-                        }
-
-                        String exerciseDataJson = "{}";  // Fallback
-                        if (exerciseDto != null) {
-                            try {
-                                exerciseDataJson = objectMapper.writeValueAsString(exerciseDto);
-                            } catch (JsonProcessingException e) {
-                                log.error("Error serializing DTO for exercise {}: {}", exercise.getId(), e.getMessage());
-                            }
-                        }
-
-                        return ExerciseSummaryDto.builder()
-                                .uuid(exercise.getUuid().toString())
-                                .type(type)
-                                .timestamp(exercise.getCreatedAt())
-                                .contentPreview(contentPreview)
-                                .exerciseData(exerciseDataJson)
-                                .createdText(exercise.getCreatedText())
-                                .questionsCount(exercise.getQuestionsCount())
-                                .isPublic(exercise.isPublic())
-                                .isCompleted(exercise.isCompleted())
-                                .updatedAt(exercise.getUpdatedAt())
-                                .metadata(exercise.getMetadata())
-                                .build(); // Остальные поля null для summary
-                    })
+            log.debug("Fetching exercises for user {}", email);
+
+            List<ExerciseSummaryDto> summaryList = exerciseRepository.findDetailsByEmail(email).stream()
+                    .map(this::toSummaryDto)
                     .collect(Collectors.toList());
 
-            log.info("Returning {} summaries", summaryList.size());
+            log.debug("Returning {} summaries", summaryList.size());
             return ResponseEntity.ok(summaryList);
 
         } catch (Exception e) {
@@ -90,55 +68,165 @@ public class HistoryController {
         }
     }
 
+    // 1a. Список заданий постранично (keyset по created_at, id) - стоимость страницы не зависит от размера истории
+    @GetMapping("/tasks")
+    public ResponseEntity<ExerciseHistoryPage> getUserExercisesPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            // Берём на одну запись больше, чтобы понять, есть ли следующая страница
+            Limit fetchLimit = Limit.of(pageSize + 1);
+
+            List<ExerciseSummaryView> rows;
+            if (cursor == null || cursor.isBlank()) {
+                rows = exerciseRepository.findSummariesByEmail(email, fetchLimit);
+            } else {
+                HistoryCursor position = HistoryCursor.decode(cursor);
+                rows = exerciseRepository.findSummariesByEmailAfter(email, position.createdAt(), position.id(), fetchLimit);
+            }
+
+            boolean hasMore = rows.size() > pageSize;
+            List<ExerciseSummaryView> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+            List<ExerciseSummaryDto> items = page.stream()
+                    .map(row -> ExerciseSummaryDto.builder()
+                            .uuid(row.getUuid().toString())
+                            .type(row.getType())
+                            .timestamp(row.getCreatedAt())
+                            .contentPreview(row.getContentPreview())
+                            .questionsCount(row.getQuestionsCount())
+                            .isPublic(row.getIsPublic())
+                            .isCompleted(row.getIsCompleted())
+                            .updatedAt(row.getUpdatedAt())
+                            .metadata(row.getMetadata())
+                            .build())
+                    .collect(Collectors.toList());
+
+            String nextCursor = null;
+            if (hasMore) {
+                ExerciseSummaryView last = page.get(page.size() - 1);
+                nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+            }
+
+            return ResponseEntity.ok(new ExerciseHistoryPage(items, nextCursor));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid history cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error fetching user exercises page", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // 1b. Фильтр истории: тип, даты, флаги и metadata (level/age/topic) + фасеты, всё одним запросом к БД
+    @GetMapping("/filter")
+    public ResponseEntity<ExerciseFilterPage> filterUserExercises(
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "isPublic", required = false) Boolean isPublic,
+            @RequestParam(value = "isCompleted", required = false) Boolean isCompleted,
+            @RequestParam(value = "level", required = false) String level,
+            @RequestParam(value = "age", required = false) String age,
+            @RequestParam(value = "topic", required = false) String topic,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+            Map<String, String> metadata = new LinkedHashMap<>();
+            if (level != null && !level.isBlank()) metadata.put("level", level);
+            if (age != null && !age.isBlank()) metadata.put("age", age);
+            if (topic != null && !topic.isBlank()) metadata.put("topic", topic);
+
+            ExerciseFilter filter = ExerciseFilter.builder()
+                    .type(type != null && !type.isBlank() ? type : null)
+                    .createdFrom(from != null ? from.atStartOfDay() : null)
+                    .createdTo(to != null ? to.plusDays(1).atStartOfDay() : null)  // Дата "по" включительно
+                    .isPublic(isPublic)
+                    .isCompleted(isCompleted)
+                    .metadata(metadata)
+                    .build();
+
+            HistoryCursor position = cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+            ExerciseJdbcRepository.FilterResult result = exerciseJdbcRepository.filter(email, filter,
+                    position != null ? position.createdAt() : null, position != null ? position.id() : null,
+                    pageSize + 1);
+
+            boolean hasMore = result.items().size() > pageSize;
+            List<ExerciseSummaryDto> items = hasMore ? result.items().subList(0, pageSize) : result.items();
+            String nextCursor = null;
+            if (hasMore) {
+                ExerciseSummaryDto last = items.get(items.size() - 1);
+                nextCursor = new HistoryCursor(last.getTimestamp(), result.ids().get(pageSize - 1)).encode();
+            }
+
+            return ResponseEntity.ok(new ExerciseFilterPage(items, nextCursor, result.facets()));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid history filter: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error filtering user exercises", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // 1c. Выгрузка всей истории: ndjson (по умолчанию) или zip, пишется в ответ потоком по мере чтения из БД
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUserExercises(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            Authentication authentication) {
+        String email = authentication.getName();
+        String date = LocalDate.now().toString();
+
+        if ("zip".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"exercises-" + date + ".zip\"")
+                    .body(out -> exerciseExportService.writeZip(email, out));
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"exercises-" + date + ".ndjson\"")
+                    .body(out -> exerciseExportService.writeNdjson(email, out));
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
     // 2. Детали задания (full, но тот же DTO)
     @GetMapping("/getTask/{uuid}")
     public ResponseEntity<ExerciseSummaryDto> getExerciseByUuid(@PathVariable String uuid, Authentication authentication) {
         try {
             String email = authentication.getName();
             UUID uuidFromString = UUID.fromString(uuid);
-            log.info("Fetching full exercise for UUID: {} by user: {}", uuidFromString, email);
+            log.debug("Fetching full exercise for UUID: {} by user: {}", uuidFromString, email);
 
-            Optional<ExerciseTableRecord> exerciseOpt = exerciseRepository.findByUuid(uuidFromString);
+            Optional<ExerciseDetailView> exerciseOpt = exerciseRepository.findDetailByUuid(uuidFromString);
 
             if (exerciseOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
 
-            ExerciseTableRecord exercise = exerciseOpt.get();
+            ExerciseDetailView exercise = exerciseOpt.get();
 
-            if (!exercise.getUser().getEmail().equals(email)) {
+            if (!exercise.getOwnerEmail().equals(email)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
-            ExerciseDto exerciseDto = exercise.getExercise();
-            if (exerciseDto == null) {
-                log.warn("Null ExerciseDto for UUID: {}", uuid);
+            if (exercise.getExerciseData() == null) {
+                log.warn("Null exercise data for UUID: {}", uuid);
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
             }
 
-            String exerciseDataJson;
-            try {
-                exerciseDataJson = objectMapper.writeValueAsString(exerciseDto);
-            } catch (JsonProcessingException e) {
-                log.error("Error serializing DTO for {}: {}", uuid, e.getMessage());
-                exerciseDataJson = "{}";
-            }
-
-            ExerciseSummaryDto response = ExerciseSummaryDto.builder()
-                    .uuid(exercise.getUuid().toString())
-                    .type(exercise.getType())
-                    .timestamp(exercise.getCreatedAt())
-                    .contentPreview(getContentPreview(exercise.getCreatedText()))  // Или из DTO
-                    .exerciseData(exerciseDataJson)  // Полный JSON
-                    .createdText(exercise.getCreatedText())
-                    .questionsCount(exercise.getQuestionsCount())
-                    .isPublic(exercise.isPublic())
-                    .isCompleted(exercise.isCompleted())
-                    .updatedAt(exercise.getUpdatedAt())
-                    .metadata(exercise.getMetadata())
-                    .build();
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(toSummaryDto(exercise));
 
         } catch (Exception e) {
             log.error("Error fetching exercise by UUID: {}", uuid, e);
@@ -146,10 +234,38 @@ public class HistoryController {
         }
     }
 
-    private String getContentPreview(String content) {
-        if (content == null || content.length() <= 100) {
-            return content;
+    private ExerciseSummaryDto toSummaryDto(ExerciseDetailView exercise) {
+        return ExerciseSummaryDto.builder()
+                .uuid(exercise.getUuid().toString())
+                .type(exercise.getType())
+                .timestamp(exercise.getCreatedAt())
+                .contentPreview(exercise.getContentPreview())
+                .exerciseData(exercise.getExerciseData() != null ? exercise.getExerciseData() : "{}")
+                .createdText(exercise.getCreatedText())
+                .questionsCount(exercise.getQuestionsCount())
+                .isPublic(exercise.getIsPublic())
+                .isCompleted(exercise.getIsCompleted())
+                .updatedAt(exercise.getUpdatedAt())
+                .metadata(exercise.getMetadata())
+                .build();
+    }
+
+    // Курсор - позиция последней выданной записи, в URL-безопасном base64
+    private record HistoryCursor(LocalDateTime createdAt, Long id) {
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
         }
-        return content.substring(0, 100) + "...";
     }
 }
@@ -1,5 +1,6 @@
 package com.miaai.language_helper.controller;
 
+import com.miaai.language_helper.config.auth.CurrentUserId;
 import com.miaai.language_helper.dto.ExerciseDto;
 import com.miaai.language_helper.model.User;
 import com.miaai.language_helper.service.GptRequestService;
@@ -9,7 +10,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -30,22 +30,24 @@ public class PdfOcrController {
     @PostMapping("/upload")
     public ResponseEntity<ExerciseDto> uploadPdf(
             @RequestParam("file") MultipartFile file,
-            Authentication authentication) {
+            @RequestParam(value = "pageFrom", required = false) Integer pageFrom,
+            @RequestParam(value = "pageTo", required = false) Integer pageTo,
+            @RequestParam(value = "incremental", required = false) Boolean incremental,
+            @CurrentUserId Long userId) {
 
         try {
-            // Получаем email из аутентификации
-            String email = authentication.getName();
+            // Ссылка на пользователя без SELECT - нужна только для user_id при сохранении
+            User user = userService.getReference(userId);
 
-            // Находим пользователя через UserService
-            User user = userService.findUserByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            String recognizedText = pdfOcrService.extractText(file);
+            String recognizedText = pdfOcrService.extractText(file, pageFrom, pageTo, incremental);
             ExerciseDto cleanedText = gptRequestService.createRecognizedExercise(recognizedText, user);
-            log.info("Cleaned text from PDF for user {}: {}", user.getId(), cleanedText);
+            log.debug("Recognized {} exercise from PDF for user {}", cleanedText.getExerciseType(), userId);
 
             return ResponseEntity.ok(cleanedText);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad PDF upload request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error processing PDF", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
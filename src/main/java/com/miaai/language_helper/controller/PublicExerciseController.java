@@ -1,21 +1,29 @@
 package com.miaai.language_helper.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.miaai.language_helper.dto.ExerciseSummaryDto;
-import com.miaai.language_helper.model.ExerciseTableRecord;
 import com.miaai.language_helper.dto.payload.TogglePublicRequest;
 import com.miaai.language_helper.dto.payload.TogglePublicResponse;
 import com.miaai.language_helper.repository.ExerciseRepository;
+import com.miaai.language_helper.service.PublicExerciseCache;
+import com.miaai.language_helper.service.PublicSnapshotPublisher;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -27,43 +35,62 @@ import java.util.UUID;
 public class PublicExerciseController {
 
     private final ExerciseRepository exerciseRepository;
-    private final ObjectMapper objectMapper;
+    private final PublicExerciseCache publicExerciseCache;
+    private final PublicSnapshotPublisher snapshotPublisher;
 
     @Value("${frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
+    // Сколько секунд браузер/прокси может показывать публичное упражнение без перепроверки
+    @Value("${public-exercise.cache.max-age-seconds:60}")
+    private long publicMaxAgeSeconds;
+
+    // Условный GET: ETag/Last-Modified из updated_at. Тело - готовые байты из PublicExerciseCache.
+    // При промахе кэша ревалидация (If-None-Match) проверяется по одному updated_at из покрывающего индекса.
+    // Смена видимости и правки обновляют updated_at и сбрасывают кэш, поэтому ETag после них меняется.
     @GetMapping("/public/exercise/{uuid}")
-    public ResponseEntity<?> getPublicExercise(@PathVariable String uuid) {
+    public ResponseEntity<?> getPublicExercise(@PathVariable String uuid, WebRequest webRequest) {
         try {
-            log.info("Public request for UUID: {}", uuid);  // ← Лог входящего запроса
+            log.debug("Public request for UUID: {}", uuid);
             if (!isValidUUID(uuid)) {
                 log.warn("Invalid UUID: {}", uuid);
                 return ResponseEntity.badRequest().build();
             }
             UUID uuidObj = UUID.fromString(uuid);
-            Optional<ExerciseTableRecord> exerciseOpt = exerciseRepository.findByUuidAndIsPublic(uuidObj, true);
-            if (exerciseOpt.isEmpty()) {
-                log.warn("Not found or not public: {}", uuid);
+
+            Optional<PublicExerciseCache.CachedExercise> cached = publicExerciseCache.getIfPresent(uuidObj);
+            if (cached.isEmpty() && isConditional(webRequest)) {
+                Optional<LocalDateTime> version = exerciseRepository.findPublicUpdatedAtByUuid(uuidObj);
+                if (version.isEmpty()) {
+                    // Оставшийся снимок скрытого упражнения больше не отдаётся nginx
+                    snapshotPublisher.remove(uuidObj);
+                    return ResponseEntity.notFound().build();
+                }
+                if (webRequest.checkNotModified(eTag(version.get()), lastModified(version.get()))) {
+                    return notModified();
+                }
+            }
+            if (cached.isEmpty()) {
+                cached = publicExerciseCache.get(uuidObj);
+                // Промах nginx и кэша: следующий просмотр этой ссылки отдаст nginx из снимка
+                cached.ifPresent(exercise -> snapshotPublisher.publish(uuidObj, exercise));
+            }
+            if (cached.isEmpty()) {
+                log.debug("Not found or not public: {}", uuid);
+                snapshotPublisher.remove(uuidObj);
                 return ResponseEntity.notFound().build();
             }
-            ExerciseTableRecord exercise = exerciseOpt.get();
-            log.info("Found public exercise {} (isPublic: {}, type: {})", uuid, exercise.isPublic(), exercise.getType());
-
-            // Build response DTO
-            String exerciseDataJson = objectMapper.writeValueAsString(exercise.getExercise());
-            log.info("Serialized exerciseData (first 100 chars): {}", exerciseDataJson.substring(0, Math.min(100, exerciseDataJson.length())) + "...");  // ← Лог JSON
-
-            ExerciseSummaryDto dto = ExerciseSummaryDto.builder()
-                    .uuid(exercise.getUuid().toString())
-                    .type(exercise.getType())
-                    .isPublic(exercise.isPublic())
-                    .exerciseData(exerciseDataJson)
-                    .createdText(exercise.getCreatedText())
-                    .updatedAt(exercise.getUpdatedAt())  // Или createdAt, если typo
-                    .build();
-
-            log.info("Returning DTO: {}", dto);  // ← Лог всего ответа (toString от @Data)
-            return ResponseEntity.ok(dto);
+
+            PublicExerciseCache.CachedExercise exercise = cached.get();
+            if (webRequest.checkNotModified(eTag(exercise.updatedAt()), lastModified(exercise.updatedAt()))) {
+                return notModified();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(eTag(exercise.updatedAt()))
+                    .lastModified(lastModified(exercise.updatedAt()))
+                    .cacheControl(publicCacheControl())
+                    .body(exercise.body());
         } catch (Exception e) {
             log.error("Error in public get {}: {}", uuid, e.getMessage(), e);
             return ResponseEntity.status(500).build();
@@ -77,20 +104,19 @@ public class PublicExerciseController {
                                                              Authentication authentication) {
         try {
             String email = authentication.getName();
-            log.info("Toggle request for {} by {}: new isPublic={}", uuid, email, request.getIsPublic());
+            log.debug("Toggle request for {} by {}: new isPublic={}", uuid, email, request.getIsPublic());
 
-            Optional<ExerciseTableRecord> exerciseOpt = exerciseRepository.findByUuidAndUser_Email(UUID.fromString(uuid), email);
-            if (exerciseOpt.isEmpty()) {
-                log.error("Not found for {} / {}", uuid, email);
+            // Прямой UPDATE по uuid и владельцу - сущность и JSONB не загружаются
+            int updated = exerciseRepository.updateIsPublic(UUID.fromString(uuid), email, request.getIsPublic(),
+                    LocalDateTime.now());
+            if (updated == 0) {
+                log.debug("Toggle target not found: {}", uuid);
                 return ResponseEntity.notFound().build();
             }
-            ExerciseTableRecord exercise = exerciseOpt.get();
-            exercise.setIsPublic(request.getIsPublic());
-            exercise.setUpdatedAt(LocalDateTime.now());  // ← Принудительно dirty для UPDATE
-
-            exerciseRepository.saveAndFlush(exercise);  // ← Flush: Сразу коммит в БД
 
-            log.info("Toggled to {} for ID {} (updatedAt={})", exercise.isPublic(), exercise.getId(), exercise.getUpdatedAt());
+            publicExerciseCache.invalidate(UUID.fromString(uuid));
+            snapshotPublisher.refresh(UUID.fromString(uuid));
+            log.debug("Toggled to {} for {}", request.getIsPublic(), uuid);
 
             String publicUrl = request.getIsPublic() ? frontendUrl + "/public/exercise/" + uuid : null;
             return ResponseEntity.ok(new TogglePublicResponse(true, request.getIsPublic(), publicUrl));
@@ -101,6 +127,31 @@ public class PublicExerciseController {
     }
 
 
+    // Сильный ETag: updated_at с точностью до микросекунд
+    private static String eTag(LocalDateTime updatedAt) {
+        Instant instant = updatedAt.atZone(ZoneId.systemDefault()).toInstant();
+        return "\"" + Long.toHexString(ChronoUnit.MICROS.between(Instant.EPOCH, instant)) + "\"";
+    }
+
+    private static long lastModified(LocalDateTime updatedAt) {
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static boolean isConditional(WebRequest webRequest) {
+        return webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    private ResponseEntity<?> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(publicCacheControl())
+                .build();
+    }
+
+    private CacheControl publicCacheControl() {
+        return CacheControl.maxAge(Duration.ofSeconds(publicMaxAgeSeconds)).cachePublic();
+    }
+
     private boolean isValidUUID(String uuid) {
         try {
             UUID.fromString(uuid);
@@ -0,0 +1,137 @@
+package com.miaai.language_helper.controller;
+
+import com.miaai.language_helper.config.auth.CurrentUserId;
+import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.model.User;
+import com.miaai.language_helper.service.ChunkedUploadService;
+import com.miaai.language_helper.service.ChunkedUploadService.UploadLimitExceededException;
+import com.miaai.language_helper.service.ChunkedUploadService.UploadNotFoundException;
+import com.miaai.language_helper.service.ChunkedUploadService.UploadOffsetMismatchException;
+import com.miaai.language_helper.service.ChunkedUploadService.UploadSession;
+import com.miaai.language_helper.service.GptRequestService;
+import com.miaai.language_helper.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Возобновляемая загрузка сканов по чанкам (tus-подобный протокол):
+ * POST /api/upload (Upload-Length) -> PATCH /api/upload/{id} (Upload-Offset, тело - байты чанка)
+ * -> HEAD /api/upload/{id} для продолжения после обрыва -> POST /api/upload/{id}/finalize.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/upload")
+@RequiredArgsConstructor
+public class UploadController {
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final GptRequestService gptRequestService;
+    private final UserService userService;
+
+    @PostMapping
+    public ResponseEntity<?> createUpload(@RequestHeader(UPLOAD_LENGTH) long length,
+                                          @RequestParam("filename") String filename,
+                                          @RequestParam(value = "pageFrom", required = false) Integer pageFrom,
+                                          @RequestParam(value = "pageTo", required = false) Integer pageTo,
+                                          @RequestParam(value = "incremental", required = false) Boolean incremental,
+                                          Authentication authentication) {
+        try {
+            UploadSession session = chunkedUploadService.create(authentication.getName(), filename, length,
+                    pageFrom, pageTo, incremental);
+            return ResponseEntity.created(URI.create("/api/upload/" + session.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, String.valueOf(length))
+                    .body(Map.of("id", session.getId()));
+        } catch (UploadLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error creating upload", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getOffset(@PathVariable String id, Authentication authentication) {
+        try {
+            UploadSession session = chunkedUploadService.get(id, authentication.getName());
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                    .header(UPLOAD_LENGTH, String.valueOf(session.getLength()))
+                    .header("Cache-Control", "no-store")
+                    .build();
+        } catch (UploadNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String id,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         HttpServletRequest request,
+                                         Authentication authentication) {
+        try {
+            UploadSession session = chunkedUploadService.get(id, authentication.getName());
+            long newOffset = chunkedUploadService.appendChunk(session, offset, request.getInputStream());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                    .build();
+        } catch (UploadNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (UploadOffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getExpectedOffset()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error writing chunk for upload {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{id}/finalize")
+    public ResponseEntity<ExerciseDto> finalizeUpload(@PathVariable String id, @CurrentUserId Long userId,
+                                                      Authentication authentication) {
+        try {
+            UploadSession session = chunkedUploadService.get(id, authentication.getName());
+            User user = userService.getReference(userId);
+
+            String recognizedText = chunkedUploadService.finish(session);
+            ExerciseDto exercise = gptRequestService.createRecognizedExercise(recognizedText, user);
+            return ResponseEntity.ok(exercise);
+
+        } catch (UploadNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (UploadOffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getExpectedOffset()))
+                    .build();
+        } catch (Exception e) {
+            log.error("Error finalizing upload {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelUpload(@PathVariable String id, Authentication authentication) {
+        try {
+            chunkedUploadService.cancel(chunkedUploadService.get(id, authentication.getName()));
+            return ResponseEntity.noContent().build();
+        } catch (UploadNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.miaai.language_helper.dto;
+
+/**
+ * Проекция упражнения вместе с payload: exercise_data читается из JSONB как текст и отдаётся клиенту как есть,
+ * без десериализации в ExerciseDto и повторной сериализации.
+ */
+public interface ExerciseDetailView extends ExerciseSummaryView {
+    String getExerciseData();
+    String getCreatedText();
+    String getOwnerEmail();
+}
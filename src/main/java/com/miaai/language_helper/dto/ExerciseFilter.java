@@ -0,0 +1,25 @@
+package com.miaai.language_helper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Условия фильтра истории. Незаданные (null) поля не участвуют в запросе.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExerciseFilter {
+    private String type;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private Boolean isPublic;
+    private Boolean isCompleted;
+    private Map<String, String> metadata;  // level, age, topic; metadata @> {...} со строкой, числом или boolean
+}
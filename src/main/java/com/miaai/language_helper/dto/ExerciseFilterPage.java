@@ -0,0 +1,19 @@
+package com.miaai.language_helper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExerciseFilterPage {
+    private List<ExerciseSummaryDto> items;
+    private String nextCursor;  // null - больше страниц нет
+    private Map<String, Map<String, Long>> facets;  // Фасет -> значение -> количество по всему отфильтрованному набору
+}
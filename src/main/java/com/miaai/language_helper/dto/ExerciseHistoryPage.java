@@ -0,0 +1,17 @@
+package com.miaai.language_helper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExerciseHistoryPage {
+    private List<ExerciseSummaryDto> items;
+    private String nextCursor;  // null - больше страниц нет
+}
@@ -0,0 +1,27 @@
+package com.miaai.language_helper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExerciseImportResult {
+    private long imported;
+    private long failed;
+    private List<ImportError> errors;  // Не больше import.max-reported-errors, остальные только в счётчике failed
+    private boolean errorsTruncated;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ImportError {
+        private String line;  // Номер строки NDJSON или "файл:строка" / "файл[индекс]" внутри ZIP
+        private String error;
+    }
+}
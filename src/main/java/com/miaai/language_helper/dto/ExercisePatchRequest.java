@@ -0,0 +1,21 @@
+package com.miaai.language_helper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Частичное изменение упражнения: меняются только переданные элементы, остальной JSON остаётся в БД как есть.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExercisePatchRequest {
+    private Map<Integer, String> questions;  // Индекс вопроса -> новый текст
+    private Map<Integer, String> answers;    // Индекс ответа -> новый ответ
+    private Map<String, Object> metadata;    // Сливается с текущими metadata (jsonb ||)
+}
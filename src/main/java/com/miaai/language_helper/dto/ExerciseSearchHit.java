@@ -0,0 +1,19 @@
+package com.miaai.language_helper.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка результата полнотекстового поиска: summary-колонки, ранг ts_rank и подсвеченный фрагмент ts_headline.
+ */
+public interface ExerciseSearchHit {
+    Long getId();
+    UUID getUuid();
+    String getType();
+    LocalDateTime getCreatedAt();
+    String getContentPreview();
+    Integer getQuestionsCount();
+    Boolean getIsPublic();
+    Float getRank();
+    String getHighlight();
+}
@@ -27,4 +27,5 @@ public class ExerciseSummaryDto {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime updatedAt;
     private Map<String, Object> metadata;  // JSONB из БД
+    private String highlight;  // Фрагмент created_text, найденные слова между \u0002 и \u0003; текст не экранирован, только в поиске
 }
@@ -0,0 +1,21 @@
+package com.miaai.language_helper.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Проекция упражнения для списков: только summary-колонки, без JSONB exercise_data и без загрузки User.
+ */
+public interface ExerciseSummaryView {
+    Long getId();
+    UUID getUuid();
+    String getType();
+    LocalDateTime getCreatedAt();
+    String getContentPreview();
+    Integer getQuestionsCount();
+    boolean getIsPublic();
+    boolean getIsCompleted();
+    LocalDateTime getUpdatedAt();
+    Map<String, Object> getMetadata();
+}
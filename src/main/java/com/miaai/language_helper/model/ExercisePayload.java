@@ -0,0 +1,68 @@
+package com.miaai.language_helper.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.util.ExerciseJsonCodec;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ленивое содержимое колонки exercise_data.
+ * Загруженный из БД JSON хранится как есть и разбирается в ExerciseDto только при первом обращении.
+ * При записи неизменённый payload возвращает исходный JSON без повторной сериализации.
+ *
+ * Экземпляр неизменяем с точки зрения Hibernate: чтобы сохранить правки, нужно установить новый payload
+ * через {@link ExerciseTableRecord#setExercise(ExerciseDto)}. Правки DTO "на месте" не отслеживаются.
+ */
+@Slf4j
+public final class ExercisePayload {
+
+    private final String json;
+    private volatile ExerciseDto value;
+    private volatile boolean resolved;
+
+    private ExercisePayload(String json, ExerciseDto value) {
+        this.json = json;
+        this.value = value;
+        this.resolved = value != null;
+    }
+
+    public static ExercisePayload fromJson(String json) {
+        return new ExercisePayload(json, null);
+    }
+
+    public static ExercisePayload of(ExerciseDto exercise) {
+        return exercise != null ? new ExercisePayload(null, exercise) : null;
+    }
+
+    public ExerciseDto get() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    value = parse();
+                    resolved = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * JSON для записи в БД: исходный текст, если payload пришёл из БД, иначе сериализованный DTO.
+     */
+    public String toJson() throws JsonProcessingException {
+        return json != null ? json : ExerciseJsonCodec.write(value);
+    }
+
+    private ExerciseDto parse() {
+        if (json == null || json.isBlank()) {
+            log.warn("Null or empty JSON in DB for ExerciseDto");
+            return null;
+        }
+        try {
+            return ExerciseJsonCodec.read(json);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to deserialize JSON to ExerciseDto. Error: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.miaai.language_helper.model;
 
 import com.miaai.language_helper.dto.ExerciseDto;
-import com.miaai.language_helper.util.ExerciseDtoConverter;
+import com.miaai.language_helper.util.ExercisePayloadConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +9,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.DynamicUpdate;  // ← Ключ: Только dirty поля в UPDATE
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.Mutability;
+import org.hibernate.type.descriptor.java.Immutability;
 import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
@@ -24,8 +26,12 @@ import java.util.UUID;
 @DynamicUpdate  // ← Обновляет только изменённые поля (is_public + updated_at)
 public class ExerciseTableRecord {
 
+    public static final int PREVIEW_LENGTH = 100;
+
+    // Пул из 50 id на один nextval: в отличие от IDENTITY, не мешает пакетной вставке
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exercises_id_seq")
+    @SequenceGenerator(name = "exercises_id_seq", sequenceName = "exercises_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "uuid", unique = true, nullable = false)
@@ -35,10 +41,13 @@ public class ExerciseTableRecord {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // Лениво разбирается при первом обращении; неизменяемый для Hibernate - переписывается только при замене payload.
+    // Правка DTO из getExercise() "на месте" без setExercise(...) при flush теряется: dirty checking её не видит
     @Column(name = "exercise_data", nullable = false, columnDefinition = "jsonb")
     @JdbcTypeCode(SqlTypes.JSON)
-    @Convert(converter = ExerciseDtoConverter.class)
-    private ExerciseDto exercise;
+    @Convert(converter = ExercisePayloadConverter.class)
+    @Mutability(Immutability.class)
+    private ExercisePayload exercise;
 
     @Column(name = "type", nullable = false, length = 50)
     private String type;
@@ -46,6 +55,10 @@ public class ExerciseTableRecord {
     @Column(name = "created_text", columnDefinition = "TEXT")
     private String createdText;
 
+    // Превью для списка истории, считается один раз при сохранении
+    @Column(name = "content_preview", length = 110)
+    private String contentPreview;
+
     @Column(name = "questions_count")
     private Integer questionsCount;
 
@@ -65,6 +78,22 @@ public class ExerciseTableRecord {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    /**
+     * Разобранный exercise_data. Изменения этого объекта не сохраняются сами по себе:
+     * после правки его нужно передать в {@link #setExercise(ExerciseDto)}.
+     */
+    public ExerciseDto getExercise() {
+        return exercise != null ? exercise.get() : null;
+    }
+
+    public void setExercise(ExerciseDto exercise) {
+        this.exercise = ExercisePayload.of(exercise);
+    }
+
+    public ExercisePayload getExercisePayload() {
+        return exercise;
+    }
+
     @Transient
     public String getUuidAsString() {
         return uuid != null ? uuid.toString() : null;
@@ -94,9 +123,10 @@ public class ExerciseTableRecord {
         return ExerciseTableRecord.builder()
                 .uuid(UUID.randomUUID())
                 .user(user)
-                .exercise(exercise)
+                .exercise(ExercisePayload.of(exercise))
                 .type(exercise.getExerciseType())
                 .createdText(exercise.getCreatedText())
+                .contentPreview(buildContentPreview(exercise))
                 .questionsCount(exercise.getQuestions() != null ? exercise.getQuestions().size() : 0)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
@@ -105,4 +135,14 @@ public class ExerciseTableRecord {
                 .metadata(exercise.getMetadata())
                 .build();
     }
+
+    public static String buildContentPreview(ExerciseDto exercise) {
+        if (exercise == null) {
+            return "";
+        }
+        String content = exercise.getCreatedText() != null
+                ? exercise.getCreatedText()
+                : (exercise.getQuestions() != null ? exercise.getQuestions().toString() : "");
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH) + "...";
+    }
 }
@@ -0,0 +1,400 @@
+package com.miaai.language_helper.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaai.language_helper.dto.ExerciseFilter;
+import com.miaai.language_helper.dto.ExercisePatchRequest;
+import com.miaai.language_helper.dto.ExerciseSummaryDto;
+import com.miaai.language_helper.model.ExerciseTableRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Запросы, которые неудобно выражать через Spring Data: динамический фильтр истории с фасетами,
+ * частичное изменение JSONB без загрузки сущности и потоковая выгрузка.
+ * Время каждого запроса пишется в метрику db.jdbc.query с тегом query; запросы Spring Data репозиториев
+ * Spring Boot измеряет сам (spring.data.repository.invocations).
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ExerciseJdbcRepository {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Map<String, Long>>> FACETS_TYPE = new TypeReference<>() {};
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    // Фасеты считаются одним GROUP BY GROUPING SETS по отфильтрованному набору (без учёта курсора)
+    private static final String FILTER_SQL = """
+            WITH filtered AS MATERIALIZED (
+                SELECT e.id, e.uuid, e.type, e.created_at, e.content_preview, e.questions_count,
+                       e.is_public, e.is_completed, e.updated_at, e.metadata
+                FROM exercises e
+                JOIN users u ON u.id = e.user_id
+                WHERE u.email = :email %s
+            ),
+            page AS (
+                SELECT * FROM filtered
+                WHERE %s
+                ORDER BY created_at DESC, id DESC
+                LIMIT :limit
+            ),
+            facet_counts AS (
+                SELECT CASE
+                           WHEN GROUPING(type) = 0 THEN 'type'
+                           WHEN GROUPING(metadata ->> 'level') = 0 THEN 'level'
+                           WHEN GROUPING(metadata ->> 'age') = 0 THEN 'age'
+                           WHEN GROUPING(metadata ->> 'topic') = 0 THEN 'topic'
+                           WHEN GROUPING(is_public) = 0 THEN 'isPublic'
+                           ELSE 'isCompleted'
+                       END AS facet,
+                       COALESCE(type, metadata ->> 'level', metadata ->> 'age', metadata ->> 'topic',
+                                is_public::text, is_completed::text) AS value,
+                       count(*) AS cnt
+                FROM filtered
+                GROUP BY GROUPING SETS ((type), (metadata ->> 'level'), (metadata ->> 'age'), (metadata ->> 'topic'),
+                                        (is_public), (is_completed))
+            ),
+            facets AS (
+                SELECT COALESCE(jsonb_object_agg(facet, counts), '{}'::jsonb)::text AS facets
+                FROM (SELECT facet, jsonb_object_agg(value, cnt) AS counts
+                      FROM facet_counts
+                      WHERE value IS NOT NULL
+                      GROUP BY facet) f
+            )
+            SELECT f.facets, p.id, p.uuid, p.type, p.created_at, p.content_preview, p.questions_count,
+                   p.is_public, p.is_completed, p.updated_at, p.metadata::text AS metadata
+            FROM facets f
+            LEFT JOIN page p ON true
+            ORDER BY p.created_at DESC, p.id DESC
+            """;
+
+    // Выгрузка: JSONB отдаётся текстом, без разбора в JVM
+    private static final String EXPORT_SQL = """
+            SELECT e.uuid, e.type, e.created_at, e.updated_at, e.is_public, e.is_completed, e.created_text,
+                   e.metadata::text AS metadata, e.exercise_data::text AS exercise_data
+            FROM exercises e
+            JOIN users u ON u.id = e.user_id
+            WHERE u.email = ?
+            ORDER BY e.created_at, e.id
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${export.fetch-size:500}")
+    private int exportFetchSize;
+
+    /**
+     * Страница отфильтрованной истории пользователя и фасеты за один запрос к БД.
+     * afterCreatedAt/afterId - позиция keyset-курсора, null для первой страницы.
+     */
+    public FilterResult filter(String email, ExerciseFilter filter, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("email", email)
+                .addValue("limit", limit);
+
+        StringBuilder where = new StringBuilder();
+        if (filter.getType() != null) {
+            where.append(" AND e.type = :type");
+            params.addValue("type", filter.getType());
+        }
+        if (filter.getCreatedFrom() != null) {
+            where.append(" AND e.created_at >= :createdFrom");
+            params.addValue("createdFrom", Timestamp.valueOf(filter.getCreatedFrom()));
+        }
+        if (filter.getCreatedTo() != null) {
+            where.append(" AND e.created_at < :createdTo");
+            params.addValue("createdTo", Timestamp.valueOf(filter.getCreatedTo()));
+        }
+        if (filter.getIsPublic() != null) {
+            where.append(" AND e.is_public = :isPublic");
+            params.addValue("isPublic", filter.getIsPublic());
+        }
+        if (filter.getIsCompleted() != null) {
+            where.append(" AND e.is_completed = :isCompleted");
+            params.addValue("isCompleted", filter.getIsCompleted());
+        }
+        if (filter.getMetadata() != null && !filter.getMetadata().isEmpty()) {
+            // Containment по GIN-индексу idx_exercises_metadata. Значение из query-строки - текст, а в metadata
+            // age может лежать числом: для каждого ключа проверяются все JSON-типы, которыми может быть значение
+            int key = 0;
+            for (Map.Entry<String, String> entry : filter.getMetadata().entrySet()) {
+                List<String> alternatives = new ArrayList<>();
+                List<Object> values = typedValues(entry.getValue());
+                for (int i = 0; i < values.size(); i++) {
+                    String param = "metadata_" + key + "_" + i;
+                    params.addValue(param, toJson(Map.of(entry.getKey(), values.get(i))));
+                    alternatives.add("e.metadata @> CAST(:" + param + " AS jsonb)");
+                }
+                where.append(" AND (").append(String.join(" OR ", alternatives)).append(")");
+                key++;
+            }
+        }
+
+        String keyset = "true";
+        if (afterCreatedAt != null && afterId != null) {
+            keyset = "(created_at < :afterCreatedAt OR (created_at = :afterCreatedAt AND id < :afterId))";
+            params.addValue("afterCreatedAt", Timestamp.valueOf(afterCreatedAt));
+            params.addValue("afterId", afterId);
+        }
+
+        List<ExerciseSummaryDto> items = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        String[] facets = new String[1];
+        String sql = FILTER_SQL.formatted(where, keyset);
+        queryTimer("history.filter").record(() -> jdbcTemplate.query(sql, params, rs -> {
+            facets[0] = rs.getString("facets");
+            long id = rs.getLong("id");
+            if (rs.wasNull()) {
+                return;  // Пустая страница: единственная строка несёт только фасеты
+            }
+            ids.add(id);
+            items.add(mapSummary(rs));
+        }));
+
+        Map<String, Map<String, Long>> facetCounts = facets[0] != null ? fromJson(facets[0], FACETS_TYPE) : Map.of();
+        return new FilterResult(items, ids, facetCounts);
+    }
+
+    /**
+     * Меняет отдельные вопросы, ответы и metadata через jsonb_set / jsonb || одним UPDATE ... RETURNING,
+     * exercise_data не читается в JVM. Пусто, если упражнение не найдено, чужое или индекс вне массива.
+     * Записи dictionary вида {"question": текст, "answer": ...} (True/False, ABCD, генерация) ссылаются на вопрос
+     * по тексту, поэтому меняются в том же выражении вместе с вопросом и ответом по этому индексу.
+     */
+    public Optional<ExerciseSummaryDto> patch(String email, UUID uuid, ExercisePatchRequest patch) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("email", email)
+                .addValue("uuid", uuid);
+
+        String data = "exercise_data";
+        StringBuilder bounds = new StringBuilder();
+        data = setArrayElements(data, "questions", patch.getQuestions(), params, bounds);
+        data = setArrayElements(data, "answers", patch.getAnswers(), params, bounds);
+        data = updateDictionary(data, patch.getQuestions(), patch.getAnswers());
+
+        StringBuilder set = new StringBuilder();
+        if (patch.getMetadata() != null && !patch.getMetadata().isEmpty()) {
+            params.addValue("metadata", toJson(patch.getMetadata()));
+            // metadata может быть JSON null - тогда || склеил бы массив, поэтому сливаем только с объектом
+            data = "jsonb_set(" + data + ", '{metadata}', "
+                    + asObjectSql("exercise_data -> 'metadata'") + " || CAST(:metadata AS jsonb))";
+            set.append("metadata = ").append(asObjectSql("metadata")).append(" || CAST(:metadata AS jsonb), ");
+        }
+        if (data.equals("exercise_data")) {
+            throw new IllegalArgumentException("Nothing to update");
+        }
+
+        set.append("exercise_data = ").append(data).append(", ");
+        if (patch.getQuestions() != null && !patch.getQuestions().isEmpty()) {
+            // Превью строится из вопросов, только если нет created_text (см. ExerciseTableRecord.buildContentPreview)
+            set.append("content_preview = CASE WHEN created_text IS NOT NULL THEN content_preview ELSE ")
+                    .append(previewSql(data)).append(" END, ");
+        }
+        // Время приложения, как у @PreUpdate в ExerciseTableRecord, а не часовой пояс сервера БД
+        params.addValue("updatedAt", LocalDateTime.now());
+        set.append("updated_at = :updatedAt");
+
+        String sql = "UPDATE exercises SET " + set
+                + " WHERE uuid = :uuid AND user_id = (SELECT id FROM users WHERE email = :email)" + bounds
+                + " RETURNING id, uuid, type, created_at, content_preview, questions_count, is_public, is_completed,"
+                + " updated_at, metadata::text AS metadata, exercise_data::text AS exercise_data, created_text";
+
+        List<ExerciseSummaryDto> updated = queryTimer("exercise.patch").record(() -> jdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            ExerciseSummaryDto dto = mapSummary(rs);
+            dto.setExerciseData(rs.getString("exercise_data"));
+            dto.setCreatedText(rs.getString("created_text"));
+            return dto;
+        }));
+        return updated.stream().findFirst();
+    }
+
+    // jsonb_set по каждому индексу; create_missing = false, а условие в WHERE не даёт молча пропустить индекс вне массива
+    private static String setArrayElements(String data, String field, Map<Integer, String> values,
+                                           MapSqlParameterSource params, StringBuilder bounds) {
+        if (values == null || values.isEmpty()) {
+            return data;
+        }
+        int maxIndex = -1;
+        for (Map.Entry<Integer, String> entry : values.entrySet()) {
+            int index = entry.getKey();
+            if (index < 0 || entry.getValue() == null) {
+                throw new IllegalArgumentException("Invalid " + field + " index or value: " + index);
+            }
+            String param = field + "_" + index;
+            params.addValue(param, entry.getValue());
+            data = "jsonb_set(" + data + ", '{" + field + "," + index + "}', to_jsonb(CAST(:" + param + " AS text)), false)";
+            maxIndex = Math.max(maxIndex, index);
+        }
+        bounds.append(" AND jsonb_typeof(exercise_data -> '").append(field).append("') = 'array'")
+                .append(" AND jsonb_array_length(exercise_data -> '").append(field).append("') > ").append(maxIndex);
+        return data;
+    }
+
+    // Запись словаря со старым текстом вопроса по индексу получает новый текст и/или ответ (параметры из setArrayElements)
+    private static String updateDictionary(String data, Map<Integer, String> questions, Map<Integer, String> answers) {
+        Set<Integer> indexes = new TreeSet<>();
+        if (questions != null) {
+            indexes.addAll(questions.keySet());
+        }
+        if (answers != null) {
+            indexes.addAll(answers.keySet());
+        }
+        if (indexes.isEmpty()) {
+            return data;
+        }
+        StringBuilder entry = new StringBuilder("CASE");
+        for (int index : indexes) {
+            List<String> fields = new ArrayList<>();
+            if (questions != null && questions.containsKey(index)) {
+                fields.add("'question', CAST(:questions_" + index + " AS text)");
+            }
+            if (answers != null && answers.containsKey(index)) {
+                fields.add("'answer', CAST(:answers_" + index + " AS text)");
+            }
+            entry.append(" WHEN jsonb_typeof(d.entry -> 'question') = 'string'")
+                    .append(" AND d.entry ->> 'question' = exercise_data -> 'questions' ->> ").append(index)
+                    .append(" THEN d.entry || jsonb_build_object(").append(String.join(", ", fields)).append(")");
+        }
+        entry.append(" ELSE d.entry END");
+        return "CASE WHEN jsonb_typeof(exercise_data -> 'dictionary') = 'array' THEN jsonb_set(" + data + ", '{dictionary}', "
+                + "COALESCE((SELECT jsonb_agg(" + entry + " ORDER BY d.ord)"
+                + " FROM jsonb_array_elements(exercise_data -> 'dictionary') WITH ORDINALITY AS d(entry, ord)), '[]'::jsonb))"
+                + " ELSE " + data + " END";
+    }
+
+    private static String asObjectSql(String expression) {
+        return "CASE WHEN jsonb_typeof(" + expression + ") = 'object' THEN " + expression + " ELSE '{}'::jsonb END";
+    }
+
+    // То же превью, что и ExerciseTableRecord.buildContentPreview: "[q1, q2]" с обрезкой до PREVIEW_LENGTH
+    private static String previewSql(String data) {
+        String text = "'[' || array_to_string(ARRAY(SELECT jsonb_array_elements_text(" + data + " -> 'questions')), ', ') || ']'";
+        return "CASE WHEN length(" + text + ") <= " + ExerciseTableRecord.PREVIEW_LENGTH + " THEN " + text
+                + " ELSE left(" + text + ", " + ExerciseTableRecord.PREVIEW_LENGTH + ") || '...' END";
+    }
+
+    private ExerciseSummaryDto mapSummary(ResultSet rs) throws SQLException {
+        return ExerciseSummaryDto.builder()
+                .uuid(rs.getString("uuid"))
+                .type(rs.getString("type"))
+                .timestamp(toLocalDateTime(rs.getTimestamp("created_at")))
+                .contentPreview(rs.getString("content_preview"))
+                .questionsCount(rs.getInt("questions_count"))
+                .isPublic(rs.getBoolean("is_public"))
+                .isCompleted(rs.getBoolean("is_completed"))
+                .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+                .metadata(fromJson(rs.getString("metadata"), METADATA_TYPE))
+                .build();
+    }
+
+    /**
+     * Проходит по всем упражнениям пользователя forward-only курсором: драйвер PostgreSQL читает строки
+     * порциями по export.fetch-size только при выключенном autocommit, поэтому всё идёт в read-only транзакции.
+     * Сущности и persistence context не создаются, память не зависит от числа строк.
+     * Время в метрике включает обработку строк consumer'ом (запись в ответ).
+     */
+    public void forEachForExport(String email, Consumer<ExportRow> consumer) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        queryTimer("exercise.export").record(() -> transaction.executeWithoutResult(status -> jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(exportFetchSize);
+            statement.setString(1, email);
+            return statement;
+        }, (ResultSet rs) -> {
+            consumer.accept(new ExportRow(
+                    rs.getString("uuid"),
+                    rs.getString("type"),
+                    toLocalDateTime(rs.getTimestamp("created_at")),
+                    toLocalDateTime(rs.getTimestamp("updated_at")),
+                    rs.getBoolean("is_public"),
+                    rs.getBoolean("is_completed"),
+                    rs.getString("created_text"),
+                    rs.getString("metadata"),
+                    rs.getString("exercise_data")));
+        })));
+    }
+
+    private Timer queryTimer(String query) {
+        return Timer.builder("db.jdbc.query")
+                .description("SQL-запросы ExerciseJdbcRepository")
+                .tag("query", query)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Строка и, если она так разбирается, число или boolean: "10" совпадёт и с {"age": "10"}, и с {"age": 10}
+    private static List<Object> typedValues(String value) {
+        List<Object> values = new ArrayList<>(2);
+        values.add(value);
+        String trimmed = value.trim();
+        if (trimmed.equals("true") || trimmed.equals("false")) {
+            values.add(Boolean.parseBoolean(trimmed));
+        } else if (NUMBER.matcher(trimmed).matches()) {
+            values.add(new BigDecimal(trimmed));
+        }
+        return values;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid metadata filter", e);
+        }
+    }
+
+    private <T> T fromJson(String json, TypeReference<T> type) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse JSONB column: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * Строка выгрузки: metadata и exercise_data остаются JSON-строками из БД и пишутся в ответ без разбора.
+     */
+    public record ExportRow(String uuid, String type, LocalDateTime createdAt, LocalDateTime updatedAt,
+                            boolean isPublic, boolean isCompleted, String createdText,
+                            String metadataJson, String exerciseJson) {
+    }
+
+    /**
+     * items и ids идут в одном порядке; ids нужны для построения курсора следующей страницы.
+     */
+    public record FilterResult(List<ExerciseSummaryDto> items, List<Long> ids, Map<String, Map<String, Long>> facets) {
+    }
+}
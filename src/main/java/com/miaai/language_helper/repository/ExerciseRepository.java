@@ -1,11 +1,18 @@
 package com.miaai.language_helper.repository;
 
+import com.miaai.language_helper.dto.ExerciseDetailView;
+import com.miaai.language_helper.dto.ExerciseSearchHit;
+import com.miaai.language_helper.dto.ExerciseSummaryView;
 import com.miaai.language_helper.model.ExerciseTableRecord;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -18,6 +25,83 @@ public interface ExerciseRepository extends JpaRepository<ExerciseTableRecord, L
     List<ExerciseTableRecord> findByUser_Id(Long userId);
     Optional<ExerciseTableRecord> findByUuidAndIsPublic(UUID uuid, boolean isPublic);
 
+    String SUMMARY_COLUMNS = "e.id AS id, e.uuid AS uuid, e.type AS type, e.createdAt AS createdAt, "
+            + "e.contentPreview AS contentPreview, e.questionsCount AS questionsCount, e.isPublic AS isPublic, "
+            + "e.isCompleted AS isCompleted, e.updatedAt AS updatedAt, e.metadata AS metadata";
+
+    // exercise_data как сырой JSON-текст: cast минует конвертер и разбор в ExerciseDto
+    String DETAIL_COLUMNS = SUMMARY_COLUMNS + ", cast(e.exercise as String) AS exerciseData, "
+            + "e.createdText AS createdText, e.user.email AS ownerEmail";
+
+    @Query("SELECT " + DETAIL_COLUMNS + " FROM ExerciseTableRecord e WHERE e.user.email = :email "
+            + "ORDER BY e.createdAt DESC, e.id DESC")
+    List<ExerciseDetailView> findDetailsByEmail(@Param("email") String email);
+
+    @Query("SELECT " + DETAIL_COLUMNS + " FROM ExerciseTableRecord e WHERE e.uuid = :uuid")
+    Optional<ExerciseDetailView> findDetailByUuid(@Param("uuid") UUID uuid);
+
+    @Query("SELECT " + DETAIL_COLUMNS + " FROM ExerciseTableRecord e WHERE e.uuid = :uuid AND e.isPublic = true")
+    Optional<ExerciseDetailView> findPublicDetailByUuid(@Param("uuid") UUID uuid);
+
+    // Версия публичного упражнения для ETag: index-only scan по idx_exercises_public_uuid_updated
+    @Query("SELECT e.updatedAt FROM ExerciseTableRecord e WHERE e.uuid = :uuid AND e.isPublic = true")
+    Optional<LocalDateTime> findPublicUpdatedAtByUuid(@Param("uuid") UUID uuid);
+
+    // Keyset-пагинация истории: первая страница
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM ExerciseTableRecord e WHERE e.user.email = :email "
+            + "ORDER BY e.createdAt DESC, e.id DESC")
+    List<ExerciseSummaryView> findSummariesByEmail(@Param("email") String email, Limit limit);
+
+    // Keyset-пагинация истории: страница после курсора (createdAt, id)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM ExerciseTableRecord e WHERE e.user.email = :email "
+            + "AND (e.createdAt < :createdAt OR (e.createdAt = :createdAt AND e.id < :id)) "
+            + "ORDER BY e.createdAt DESC, e.id DESC")
+    List<ExerciseSummaryView> findSummariesByEmailAfter(@Param("email") String email,
+                                                        @Param("createdAt") LocalDateTime createdAt,
+                                                        @Param("id") Long id,
+                                                        Limit limit);
+
+    // Полнотекстовый поиск по created_text. Выражение to_tsvector должно совпадать с индексом idx_exercises_created_text,
+    // ts_headline считается только для строк итоговой страницы. Найденные слова обрамляются управляющими символами
+    // U+0002/U+0003, а не HTML: created_text пишут пользователи, клиент сначала экранирует текст, потом ставит <mark>
+    String SEARCH_SELECT = "SELECT h.id, h.uuid, h.type, h.createdAt, h.contentPreview, h.questionsCount, h.isPublic, h.rank, "
+            + "ts_headline('english', h.created_text, plainto_tsquery('english', :query), "
+            + "'MaxFragments=2, MinWords=5, MaxWords=20, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS highlight FROM ("
+            + "SELECT e.id AS id, e.uuid AS uuid, e.type AS type, e.created_at AS createdAt, "
+            + "e.content_preview AS contentPreview, e.questions_count AS questionsCount, e.is_public AS isPublic, "
+            + "e.created_text, ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', :query)) AS rank "
+            + "FROM exercises e ";
+    String SEARCH_MATCH = "to_tsvector('english', e.created_text) @@ plainto_tsquery('english', :query) ";
+    // Keyset по (rank, id): сравнение в real, чтобы ранг из курсора совпадал с вычисленным точно
+    String SEARCH_AFTER = "AND (ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', :query)) < CAST(:rank AS real) "
+            + "OR (ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', :query)) = CAST(:rank AS real) AND e.id < :id)) ";
+    String SEARCH_ORDER = "ORDER BY rank DESC, id DESC LIMIT :limit) h ORDER BY h.rank DESC, h.id DESC";
+    String SEARCH_OWN = "JOIN users u ON u.id = e.user_id WHERE u.email = :email AND ";
+    String SEARCH_PUBLIC = "WHERE e.is_public = true AND ";
+
+    @Query(value = SEARCH_SELECT + SEARCH_OWN + SEARCH_MATCH + SEARCH_ORDER, nativeQuery = true)
+    List<ExerciseSearchHit> searchOwn(@Param("email") String email, @Param("query") String query, @Param("limit") int limit);
+
+    @Query(value = SEARCH_SELECT + SEARCH_OWN + SEARCH_MATCH + SEARCH_AFTER + SEARCH_ORDER, nativeQuery = true)
+    List<ExerciseSearchHit> searchOwnAfter(@Param("email") String email, @Param("query") String query,
+                                           @Param("rank") float rank, @Param("id") long id, @Param("limit") int limit);
+
+    @Query(value = SEARCH_SELECT + SEARCH_PUBLIC + SEARCH_MATCH + SEARCH_ORDER, nativeQuery = true)
+    List<ExerciseSearchHit> searchPublic(@Param("query") String query, @Param("limit") int limit);
+
+    @Query(value = SEARCH_SELECT + SEARCH_PUBLIC + SEARCH_MATCH + SEARCH_AFTER + SEARCH_ORDER, nativeQuery = true)
+    List<ExerciseSearchHit> searchPublicAfter(@Param("query") String query, @Param("rank") float rank,
+                                              @Param("id") long id, @Param("limit") int limit);
+
+    // Смена видимости одним UPDATE, без загрузки сущности и exercise_data.
+    // updatedAt передаётся из приложения: CURRENT_TIMESTAMP взял бы часовой пояс сервера БД
+    @Transactional
+    @Modifying
+    @Query("UPDATE ExerciseTableRecord e SET e.isPublic = :isPublic, e.updatedAt = :updatedAt "
+            + "WHERE e.uuid = :uuid AND e.user.id = (SELECT u.id FROM User u WHERE u.email = :email)")
+    int updateIsPublic(@Param("uuid") UUID uuid, @Param("email") String email, @Param("isPublic") boolean isPublic,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+
     @Query("SELECT e FROM ExerciseTableRecord e WHERE e.uuid = :uuid AND e.user.email = :email")
     Optional<ExerciseTableRecord> findByUuidAndUser_Email(@Param("uuid") UUID uuid, @Param("email") String email);
 }
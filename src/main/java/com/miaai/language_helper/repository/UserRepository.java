@@ -13,4 +13,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Для exists проверки
     @Query(value = "SELECT EXISTS(SELECT 1 FROM users WHERE email = :email)", nativeQuery = true)
     boolean existsByEmail(@Param("email") String email);
+
+    // Флаг активности по id для кэша статусов в JwtAuthFilter; пусто - пользователь удалён
+    @Query("select u.enabled from User u where u.id = :id")
+    Optional<Boolean> findEnabledById(@Param("id") Long id);
 }
\ No newline at end of file
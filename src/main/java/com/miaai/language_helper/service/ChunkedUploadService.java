@@ -0,0 +1,293 @@
+package com.miaai.language_helper.service;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Возобновляемая загрузка больших сканов по чанкам (по мотивам протокола tus):
+ * create -> PATCH чанков со смещением -> finalize.
+ * Чанки пишутся напрямую в spool-файл через FileChannel, оборванная загрузка продолжается с последнего смещения.
+ * Как только получен последний байт, распознавание запускается в фоне, не дожидаясь finalize;
+ * лимит OCR (RateLimiter) поэтому проверяется при создании загрузки, а не на finalize.
+ * Брошенные загрузки удаляются по расписанию вместе с файлом и фоновым распознаванием,
+ * число открытых загрузок и их суммарный объём на пользователя ограничены.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final PdfOcrService pdfOcrService;
+    private final Tracer tracer;
+
+    @Value("${upload.spool-dir:${java.io.tmpdir}/language-helper-uploads}")
+    private String spoolDir;
+
+    @Value("${upload.max-size:209715200}")
+    private long maxUploadSize;
+
+    // Незавершённые загрузки старше этого срока удаляются
+    @Value("${upload.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${upload.ocr-threads:2}")
+    private int ocrThreads;
+
+    // Не даёт одному аккаунту занять диск незавершёнными загрузками
+    @Value("${upload.max-sessions-per-user:3}")
+    private int maxSessionsPerUser;
+
+    @Value("${upload.max-bytes-per-user:${upload.max-size:209715200}}")
+    private long maxBytesPerUser;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private ExecutorService ocrExecutor;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(Paths.get(spoolDir));
+        // Фоновое распознавание продолжает трейс запроса, принёсшего последний чанк
+        ocrExecutor = Context.taskWrapping(Executors.newFixedThreadPool(ocrThreads));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ocrExecutor.shutdownNow();
+        sessions.values().forEach(this::deleteSpoolFile);
+    }
+
+    public UploadSession create(String ownerEmail, String filename, long length,
+                                Integer pageFrom, Integer pageTo, Boolean incremental) throws IOException {
+        if (length <= 0 || length > maxUploadSize) {
+            throw new IllegalArgumentException("Upload-Length must be between 1 and " + maxUploadSize);
+        }
+        if (!pdfOcrService.isSupportedFile(filename)) {
+            throw new IllegalArgumentException("Unsupported file format: " + filename);
+        }
+        removeExpired();
+
+        UploadSession session;
+        // Проверка лимитов и регистрация сессии атомарны относительно других create
+        synchronized (sessions) {
+            int openSessions = 0;
+            long reservedBytes = 0;
+            for (UploadSession existing : sessions.values()) {
+                if (existing.getOwnerEmail().equals(ownerEmail)) {
+                    openSessions++;
+                    reservedBytes += existing.getLength();
+                }
+            }
+            if (openSessions >= maxSessionsPerUser || reservedBytes + length > maxBytesPerUser) {
+                throw new UploadLimitExceededException(maxSessionsPerUser, maxBytesPerUser);
+            }
+
+            String id = UUID.randomUUID().toString();
+            Path spoolFile = Paths.get(spoolDir, id + ".part");
+            Files.createFile(spoolFile);
+
+            session = new UploadSession(id, ownerEmail, filename, length, spoolFile, pageFrom, pageTo, incremental);
+            sessions.put(id, session);
+        }
+        log.info("Created upload {} for {}: {} ({} bytes)", session.getId(), ownerEmail, filename, length);
+        return session;
+    }
+
+    public UploadSession get(String id, String ownerEmail) {
+        UploadSession session = sessions.get(id);
+        if (session == null || !session.getOwnerEmail().equals(ownerEmail)) {
+            throw new UploadNotFoundException(id);
+        }
+        return session;
+    }
+
+    /**
+     * Дописывает чанк начиная с offset. Смещение должно совпадать с уже принятым объёмом.
+     *
+     * @return новое смещение
+     */
+    public long appendChunk(UploadSession session, long offset, InputStream body) throws IOException {
+        synchronized (session) {
+            if (offset != session.getOffset()) {
+                throw new UploadOffsetMismatchException(session.getOffset());
+            }
+            if (session.isComplete()) {
+                return session.getOffset();
+            }
+
+            long position = offset;
+            Span span = tracer.spanBuilder("upload.spool").setAttribute("upload.offset", offset).startSpan();
+            try (Scope ignored = span.makeCurrent();
+                 FileChannel channel = FileChannel.open(session.getSpoolFile(), StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(body)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    if (position + buffer.remaining() > session.getLength()) {
+                        throw new IllegalArgumentException("Chunk exceeds declared Upload-Length");
+                    }
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+            } finally {
+                // Даже при обрыве соединения фиксируем то, что успели записать - клиент продолжит с этого места
+                session.setOffset(position);
+                session.touch();
+                span.setAttribute("upload.bytes", position - offset);
+                span.end();
+            }
+
+            if (session.isComplete()) {
+                log.info("Upload {} complete, starting OCR", session.getId());
+                session.setOcrResult(CompletableFuture.supplyAsync(() -> pdfOcrService.extractText(
+                        session.getSpoolFile().toFile(), session.getFilename(),
+                        session.getPageFrom(), session.getPageTo(), session.getIncremental()), ocrExecutor));
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Ждёт окончания распознавания и удаляет загрузку.
+     */
+    public String finish(UploadSession session) throws InterruptedException, ExecutionException {
+        if (!session.isComplete() || session.getOcrResult() == null) {
+            throw new UploadOffsetMismatchException(session.getOffset());
+        }
+        try {
+            return session.getOcrResult().get();
+        } finally {
+            sessions.remove(session.getId());
+            deleteSpoolFile(session);
+        }
+    }
+
+    public void cancel(UploadSession session) {
+        sessions.remove(session.getId());
+        if (session.getOcrResult() != null) {
+            session.getOcrResult().cancel(true);
+        }
+        deleteSpoolFile(session);
+    }
+
+    /**
+     * Удаляет загрузки без активности дольше upload.ttl-minutes: отменяет распознавание и удаляет spool-файл.
+     */
+    @Scheduled(fixedDelayString = "${upload.sweep-interval-ms:60000}")
+    public void removeExpired() {
+        Instant deadline = Instant.now().minus(Duration.ofMinutes(ttlMinutes));
+        sessions.values().removeIf(session -> {
+            if (session.getLastActivity().isBefore(deadline)) {
+                log.info("Upload {} expired", session.getId());
+                if (session.getOcrResult() != null) {
+                    session.getOcrResult().cancel(true);
+                }
+                deleteSpoolFile(session);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void deleteSpoolFile(UploadSession session) {
+        try {
+            Files.deleteIfExists(session.getSpoolFile());
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}: {}", session.getSpoolFile(), e.getMessage());
+        }
+    }
+
+    @Getter
+    public static class UploadSession {
+        private final String id;
+        private final String ownerEmail;
+        private final String filename;
+        private final long length;
+        private final Path spoolFile;
+        private final Integer pageFrom;
+        private final Integer pageTo;
+        private final Boolean incremental;
+        private volatile long offset;
+        private volatile Instant lastActivity = Instant.now();
+        private volatile CompletableFuture<String> ocrResult;
+
+        UploadSession(String id, String ownerEmail, String filename, long length, Path spoolFile,
+                      Integer pageFrom, Integer pageTo, Boolean incremental) {
+            this.id = id;
+            this.ownerEmail = ownerEmail;
+            this.filename = filename;
+            this.length = length;
+            this.spoolFile = spoolFile;
+            this.pageFrom = pageFrom;
+            this.pageTo = pageTo;
+            this.incremental = incremental;
+        }
+
+        public boolean isComplete() {
+            return offset == length;
+        }
+
+        void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        void setOcrResult(CompletableFuture<String> ocrResult) {
+            this.ocrResult = ocrResult;
+        }
+
+        void touch() {
+            lastActivity = Instant.now();
+        }
+    }
+
+    public static class UploadNotFoundException extends RuntimeException {
+        public UploadNotFoundException(String id) {
+            super("Upload not found: " + id);
+        }
+    }
+
+    public static class UploadLimitExceededException extends RuntimeException {
+        public UploadLimitExceededException(int maxSessions, long maxBytes) {
+            super("Too many open uploads: at most " + maxSessions + " uploads and " + maxBytes + " bytes per user");
+        }
+    }
+
+    public static class UploadOffsetMismatchException extends RuntimeException {
+        @Getter
+        private final long expectedOffset;
+
+        public UploadOffsetMismatchException(long expectedOffset) {
+            super("Upload offset mismatch, expected " + expectedOffset);
+            this.expectedOffset = expectedOffset;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.miaai.language_helper.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository.ExportRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Потоковая выгрузка истории пользователя в NDJSON (одно упражнение на строку) или ZIP с JSON-файлами.
+ * Строки пишутся в ответ по мере чтения курсора, JSONB из БД вставляется как есть (writeRawValue).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExerciseExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExerciseJdbcRepository exerciseJdbcRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.zip-entry-size:1000}")
+    private int zipEntrySize;
+
+    public void writeNdjson(String email, OutputStream responseStream) throws IOException {
+        OutputStream out = new BufferedOutputStream(responseStream, BUFFER_SIZE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Разделитель строк вместо пробела между корневыми значениями
+            generator.setRootValueSeparator(null);
+            long[] count = new long[1];
+            forEach(email, row -> {
+                writeRow(generator, row);
+                generator.writeRaw('\n');
+                count[0]++;
+            });
+            generator.flush();
+            log.info("Exported {} exercises as NDJSON for {}", count[0], email);
+        }
+    }
+
+    /**
+     * ZIP из файлов exercises-000001.json, ... - в каждом JSON-массив до export.zip-entry-size упражнений.
+     * Файл на каждое упражнение не подходит: ZipOutputStream держит запись центрального каталога на каждый файл,
+     * и на миллионе упражнений память росла бы вместе с числом строк.
+     */
+    public void writeZip(String email, OutputStream responseStream) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(responseStream, BUFFER_SIZE));
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(zip);
+        // Генератор пишет в открытую запись архива и не должен закрывать сам поток
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long[] count = new long[1];
+        forEach(email, row -> {
+            if (count[0] % zipEntrySize == 0) {
+                if (count[0] > 0) {
+                    closeZipEntry(generator, zip);
+                }
+                zip.putNextEntry(new ZipEntry(String.format("exercises-%06d.json", count[0] / zipEntrySize + 1)));
+                generator.writeStartArray();
+            }
+            writeRow(generator, row);
+            count[0]++;
+        });
+        if (count[0] > 0) {
+            closeZipEntry(generator, zip);
+        }
+        generator.close();
+        zip.finish();
+        zip.flush();
+        log.info("Exported {} exercises as ZIP for {}", count[0], email);
+    }
+
+    private static void closeZipEntry(JsonGenerator generator, ZipOutputStream zip) throws IOException {
+        generator.writeEndArray();
+        generator.flush();
+        zip.closeEntry();
+    }
+
+    private void forEach(String email, RowWriter writer) throws IOException {
+        try {
+            exerciseJdbcRepository.forEachForExport(email, row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Чаще всего клиент оборвал скачивание - курсор и транзакция уже закрыты
+            throw e.getCause();
+        }
+    }
+
+    private static void writeRow(JsonGenerator generator, ExportRow row) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("uuid", row.uuid());
+        generator.writeStringField("type", row.type());
+        generator.writeStringField("createdAt", row.createdAt() != null ? row.createdAt().toString() : null);
+        generator.writeStringField("updatedAt", row.updatedAt() != null ? row.updatedAt().toString() : null);
+        generator.writeBooleanField("isPublic", row.isPublic());
+        generator.writeBooleanField("isCompleted", row.isCompleted());
+        generator.writeStringField("createdText", row.createdText());
+        generator.writeFieldName("metadata");
+        writeRawJson(generator, row.metadataJson());
+        generator.writeFieldName("exercise");
+        writeRawJson(generator, row.exerciseJson());
+        generator.writeEndObject();
+    }
+
+    private static void writeRawJson(JsonGenerator generator, String json) throws IOException {
+        if (json == null) {
+            generator.writeNull();
+        } else {
+            generator.writeRawValue(json);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ExportRow row) throws IOException;
+    }
+}
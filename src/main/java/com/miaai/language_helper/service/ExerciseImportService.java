@@ -0,0 +1,248 @@
+package com.miaai.language_helper.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.miaai.language_helper.dto.ExerciseImportResult;
+import com.miaai.language_helper.dto.ExerciseSaveRequest;
+import com.miaai.language_helper.model.ExerciseTableRecord;
+import com.miaai.language_helper.model.User;
+import com.miaai.language_helper.repository.ExerciseRepository;
+import com.miaai.language_helper.util.ExerciseSaveRequestConverter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Потоковый импорт упражнений из NDJSON или ZIP (JSON/NDJSON-файлы внутри, в том числе архив выгрузки).
+ * Конвейер: поток запроса читает записи потоковым парсером Jackson, проверка и преобразование в сущность
+ * идут на пуле воркеров, готовые записи сохраняются пачками по import.batch-size - каждая пачка в своей транзакции.
+ * Ошибки копятся по строкам, неудачная запись или пачка не останавливает импорт.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExerciseImportService {
+
+    private final ObjectMapper objectMapper;
+    private final ExerciseSaveRequestConverter exerciseSaveRequestConverter;
+    private final ExerciseRepository exerciseRepository;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${import.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newFixedThreadPool(workerThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public ExerciseImportResult importNdjson(InputStream input, User user) throws IOException {
+        ImportRun run = new ImportRun(user);
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            readValues(parser, "", run);
+        }
+        return run.finish();
+    }
+
+    public ExerciseImportResult importZip(InputStream input, User user) throws IOException {
+        ImportRun run = new ImportRun(user);
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory() || !(entry.getName().endsWith(".json") || entry.getName().endsWith(".ndjson"))) {
+                continue;
+            }
+            // Парсер читает одну запись архива и не должен закрывать ZipInputStream
+            JsonParser parser = objectMapper.getFactory().createParser(zip);
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            readValues(parser, entry.getName() + ":", run);
+            parser.close();
+        }
+        return run.finish();
+    }
+
+    // Корневые значения подряд (NDJSON) или JSON-массив: каждый объект - одно упражнение
+    private void readValues(JsonParser parser, String prefix, ImportRun run) throws IOException {
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.START_ARRAY) {
+                    int index = 0;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        run.submit(prefix.isEmpty() ? "[" + index + "]" : prefix.substring(0, prefix.length() - 1) + "[" + index + "]",
+                                objectMapper.readTree(parser));
+                        index++;
+                    }
+                } else if (token == JsonToken.START_OBJECT) {
+                    String ref = prefix + parser.currentTokenLocation().getLineNr();
+                    run.submit(ref, objectMapper.readTree(parser));
+                } else {
+                    run.fail(prefix + parser.currentTokenLocation().getLineNr(), "Expected JSON object");
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // После синтаксической ошибки позиция в потоке не восстанавливается - остаток файла пропускаем
+            run.fail(prefix + e.getLocation().getLineNr(), "Malformed JSON, rest of input skipped: " + e.getOriginalMessage());
+        }
+    }
+
+    // Запись выгрузки ({"exercise": {...}, "metadata": ...}) или сам запрос сохранения
+    private Converted convert(String ref, JsonNode node, User user) {
+        try {
+            JsonNode source = node;
+            if (node.path("exercise").isObject()) {
+                ObjectNode exercise = ((ObjectNode) node.get("exercise")).deepCopy();
+                if (!exercise.hasNonNull("metadata") && node.path("metadata").isObject()) {
+                    exercise.set("metadata", node.get("metadata"));
+                }
+                if (!exercise.hasNonNull("createdText") && node.hasNonNull("createdText")) {
+                    exercise.set("createdText", node.get("createdText"));
+                }
+                source = exercise;
+            }
+            ExerciseSaveRequest request = objectMapper.treeToValue(source, ExerciseSaveRequest.class);
+            if (request.getType() == null) {
+                throw new IllegalArgumentException("Exercise type is required");
+            }
+            if (request.getQuestions() == null || request.getQuestions().isEmpty()) {
+                throw new IllegalArgumentException("Questions are required");
+            }
+            return new Converted(ref, ExerciseTableRecord.fromDto(exerciseSaveRequestConverter.toExerciseDto(request), user), null);
+        } catch (JsonProcessingException e) {
+            return new Converted(ref, null, e.getOriginalMessage());
+        } catch (RuntimeException e) {
+            return new Converted(ref, null, e.getMessage());
+        }
+    }
+
+    private record Converted(String ref, ExerciseTableRecord record, String error) {
+    }
+
+    /**
+     * Состояние одного импорта. Используется только потоком запроса; воркеры лишь считают convert.
+     */
+    private final class ImportRun {
+        private final User user;
+        // Окно незавершённых задач: ограничивает память и сохраняет порядок записей
+        private final Deque<Future<Converted>> inFlight = new ArrayDeque<>();
+        private final List<Converted> batch = new ArrayList<>();
+        private final List<ExerciseImportResult.ImportError> errors = new ArrayList<>();
+        private final TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        private long imported;
+        private long failed;
+
+        private ImportRun(User user) {
+            this.user = user;
+        }
+
+        void submit(String ref, JsonNode node) {
+            inFlight.add(workers.submit(() -> convert(ref, node, user)));
+            if (inFlight.size() >= batchSize * 2) {
+                accept(await(inFlight.poll()));
+            }
+        }
+
+        void fail(String ref, String error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ExerciseImportResult.ImportError(ref, error));
+            }
+        }
+
+        ExerciseImportResult finish() {
+            while (!inFlight.isEmpty()) {
+                accept(await(inFlight.poll()));
+            }
+            flush();
+            log.info("Import for user {} finished: {} imported, {} failed", user.getId(), imported, failed);
+            return ExerciseImportResult.builder()
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(errors)
+                    .errorsTruncated(failed > errors.size())
+                    .build();
+        }
+
+        private void accept(Converted converted) {
+            if (converted.error() != null) {
+                fail(converted.ref(), converted.error());
+                return;
+            }
+            batch.add(converted);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transaction.executeWithoutResult(status -> {
+                    exerciseRepository.saveAll(batch.stream().map(Converted::record).toList());
+                    entityManager.flush();
+                    // open-in-view держит EntityManager весь запрос - без clear сохранённые сущности копились бы в памяти
+                    entityManager.clear();
+                });
+                imported += batch.size();
+            } catch (RuntimeException e) {
+                log.warn("Import batch of {} failed: {}", batch.size(), e.getMessage());
+                entityManager.clear();
+                for (Converted converted : batch) {
+                    fail(converted.ref(), "Batch write failed: " + e.getMessage());
+                }
+            }
+            batch.clear();
+        }
+
+        private Converted await(Future<Converted> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Импорт прерван", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Ошибка проверки записи импорта", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.miaai.language_helper.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Определяет по уже распознанным страницам, закончилось ли упражнение.
+ * Используется для ранней остановки OCR: как только упражнение целиком найдено, остальные страницы не распознаются.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExerciseStructureDetector {
+
+    private static final Pattern EXERCISE_HEADING = Pattern.compile("(?im)^\\s*(exercise|task|упражнение|задание)\\s*\\d+");
+
+    private final ExerciseTypeClassifier exerciseTypeClassifier;
+
+    /**
+     * @param pages       тексты страниц по порядку, для нераспознанных - заглушка
+     * @param failedPages индексы страниц, которые не удалось распознать: отсутствие пунктов на них ничего не значит
+     */
+    public Detection detect(List<String> pages, Set<Integer> failedPages) {
+        int firstPage = -1;
+        int lastPage = -1;
+        for (int i = 0; i < pages.size(); i++) {
+            if (exerciseTypeClassifier.containsExerciseItems(pages.get(i))) {
+                if (firstPage < 0) {
+                    firstPage = i;
+                }
+                lastPage = i;
+            }
+        }
+        if (firstPage < 0) {
+            return new Detection(false, 0, pages.size() - 1);
+        }
+
+        String exerciseText = String.join("\n", pages.subList(firstPage, lastPage + 1));
+        boolean confident = exerciseTypeClassifier.isConfident(exerciseTypeClassifier.classify(exerciseText));
+
+        // Упражнение закончилось, если после него пошла распознанная страница без пунктов или начался следующий заголовок
+        boolean endedByPage = false;
+        for (int i = lastPage + 1; i < pages.size() && !endedByPage; i++) {
+            endedByPage = !failedPages.contains(i);
+        }
+        boolean endedByHeading = countHeadings(exerciseText) >= 2;
+
+        return new Detection(confident && (endedByPage || endedByHeading), firstPage, lastPage);
+    }
+
+    private static int countHeadings(String text) {
+        Matcher matcher = EXERCISE_HEADING.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param firstPage индекс первой страницы с упражнением (в списке переданных страниц)
+     * @param lastPage  индекс последней страницы с упражнением
+     */
+    public record Detection(boolean complete, int firstPage, int lastPage) {
+    }
+}
@@ -0,0 +1,105 @@
+package com.miaai.language_helper.service;
+
+import com.miaai.language_helper.dto.ExerciseType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Быстрый локальный классификатор распознанного текста.
+ * По структурным признакам (пропуски, две нумерованные колонки, True/False) угадывает тип упражнения,
+ * чтобы в промпт LLM можно было отправить только один шаблон вместо всех.
+ */
+@Slf4j
+@Component
+public class ExerciseTypeClassifier {
+
+    // Пропуски: "_____", " ......" (отдельно от слова, а не многоточие после него), "……"
+    private static final Pattern GAP = Pattern.compile("_{3,}|(?<!\\S)\\.{5,}|…{2,}");
+    // Элементы первой колонки: "1. ", "2) ", "10 - ". Пробел после маркера отсекает "10.5", "2-3 days"
+    private static final Pattern NUMBERED_ITEM = Pattern.compile("(?m)^\\s*\\d{1,2}(?:[.)]|\\s+-)\\s+\\S");
+    // Элементы второй колонки: "a)", "B.", "c -"
+    private static final Pattern LETTERED_ITEM = Pattern.compile("(?m)^\\s*[a-hA-H]\\s*[.)\\-]\\s");
+    // Варианты ответа, а не слова в тексте: TRUE/FALSE/NOT GIVEN прописными, "T/F", "(T)", "T F" отдельной строкой,
+    // или true/false/верно/неверно в конце строки утверждения. "It is true that..." не считается
+    private static final Pattern TRUE_FALSE_TOKEN = Pattern.compile(
+            "(?m)\\b(?:TRUE|FALSE|NOT GIVEN)\\b|\\bT\\s*/\\s*F\\b|\\(\\s*[TF]\\s*\\)|^\\s*T\\s+F\\s*$"
+                    + "|(?<![\\p{L}])(?i:true|false|not given|верно|неверно)\\s*$");
+
+    private static final Pattern FILL_KEYWORDS = Pattern.compile("(?i)fill in|complete the|gaps?\\b|blanks?\\b");
+    private static final Pattern MATCH_KEYWORDS = Pattern.compile("(?i)\\bmatch(ing)?\\b|соедини|сопоставь");
+    private static final Pattern TRUE_FALSE_KEYWORDS = Pattern.compile("(?i)true\\s*(or|/)\\s*false|right or wrong");
+
+    private static final int KEYWORD_WEIGHT = 3;
+    private static final int MIN_EVIDENCE = 4;
+
+    @Value("${ocr.classifier.min-confidence:0.6}")
+    private double minConfidence;
+
+    public Classification classify(String text) {
+        if (text == null || text.isBlank()) {
+            return Classification.UNKNOWN;
+        }
+
+        int fillScore = count(GAP, text) * 2 + (FILL_KEYWORDS.matcher(text).find() ? KEYWORD_WEIGHT : 0);
+
+        int pairs = Math.min(count(NUMBERED_ITEM, text), count(LETTERED_ITEM, text));
+        int matchScore = (pairs >= 2 ? pairs * 2 : 0) + (MATCH_KEYWORDS.matcher(text).find() ? KEYWORD_WEIGHT : 0);
+
+        int trueFalseScore = count(TRUE_FALSE_TOKEN, text) * 2 + (TRUE_FALSE_KEYWORDS.matcher(text).find() ? KEYWORD_WEIGHT : 0);
+
+        ExerciseType best = ExerciseType.FILLTHEGAP;
+        int bestScore = fillScore;
+        if (matchScore > bestScore) {
+            best = ExerciseType.MATCHTHESENTENCE;
+            bestScore = matchScore;
+        }
+        if (trueFalseScore > bestScore) {
+            best = ExerciseType.TRUEFALSE;
+            bestScore = trueFalseScore;
+        }
+
+        int total = fillScore + matchScore + trueFalseScore;
+        if (bestScore < MIN_EVIDENCE || total == 0) {
+            return Classification.UNKNOWN;
+        }
+
+        Classification result = new Classification(best, (double) bestScore / total);
+        log.debug("OCR text classified as {} (fill={}, match={}, trueFalse={}, confidence={})",
+                best.getName(), fillScore, matchScore, trueFalseScore, result.confidence());
+        return result;
+    }
+
+    /**
+     * Есть ли в тексте хотя бы один элемент упражнения: пропуск, пункт колонки или ответ True/False.
+     */
+    public boolean containsExerciseItems(String text) {
+        if (text == null || text.isBlank()) {
+            return false;
+        }
+        return GAP.matcher(text).find()
+                || NUMBERED_ITEM.matcher(text).find()
+                || LETTERED_ITEM.matcher(text).find()
+                || TRUE_FALSE_TOKEN.matcher(text).find();
+    }
+
+    public boolean isConfident(Classification classification) {
+        return classification.type() != null && classification.confidence() >= minConfidence;
+    }
+
+    private static int count(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    public record Classification(ExerciseType type, double confidence) {
+        public static final Classification UNKNOWN = new Classification(null, 0.0);
+    }
+}
@@ -5,15 +5,29 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.miaai.language_helper.config.ApiSettings;
 import com.miaai.language_helper.dto.ExerciseDto;
 import com.miaai.language_helper.dto.ExerciseType;
+import com.miaai.language_helper.dto.Usage;
 import com.miaai.language_helper.dto.generation.*;
 import com.miaai.language_helper.dto.ocr.FillTheGapsResponseDto;
 import com.miaai.language_helper.dto.ocr.MatchTheSentenceResponseDto;
 import com.miaai.language_helper.model.ExerciseTableRecord;
 import com.miaai.language_helper.model.User;
+import com.miaai.language_helper.util.LogRedactor;
+import com.miaai.language_helper.util.Spans;
 import com.miaai.language_helper.repository.ExerciseRepository;
+import com.miaai.language_helper.service.ocr.OcrTextNormalizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -24,6 +38,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
@@ -33,8 +48,63 @@ public class GptRequestService {
     private final ObjectMapper objectMapper;
     private final ApiSettings apiSettings;
     private final ExerciseRepository exerciseRepository;
+    private final ExerciseTypeClassifier exerciseTypeClassifier;
+    private final OcrTextNormalizer ocrTextNormalizer;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final ContextPropagators propagators;
     static final String MODEL = "gpt-4.1";
 
+    // Тег exercise.type для OCR, когда тип не определён локально и его выбирает сама модель
+    private static final String EXERCISE_TYPE_AUTO = "auto";
+
+    // Промпты и ответы LLM в лог - только на DEBUG и не длиннее этого
+    private static final int LOG_BODY_MAX_CHARS = 2000;
+
+    // Шаблоны OCR-упражнений собираются один раз, а не при каждом запросе
+    private static final Map<ExerciseType, String> OCR_EXERCISE_TEMPLATES = Map.of(
+            ExerciseType.FILLTHEGAP, """
+            Если это упражнение "Fill The Gaps", то необходимо вернуть JSON с вопросами и ответами.
+            Пробелы куда надо вставить всегда должны быть обозначены как "_____" (пять подчеркиваний).
+            Пожалуйста перемешай правильные ответы, чтоб они шли не по порядку.
+            Формат JSON:
+            {
+                "type": "Fill The Gaps",
+                "questions": ["вопрос1", "вопрос2", ...],
+                "answers": ["ответ1", "ответ2", ...],
+                "dictionary": [ { "question": indexOfQuestions, "answer": indexOfanswers } ]
+            }
+            """,
+
+            ExerciseType.MATCHTHESENTENCE, """
+            Если это упражнение Match the Sentences, то необходимо вернуть JSON с вопросами и ответами.
+            Пожалуйста перемешай правильные ответы, чтоб они шли не по порядку.
+            Формат JSON:
+            {
+              "type": "Match The Sentence",
+              "questions": ["вопрос1", "вопрос2", ...],
+              "answers": ["ответ1", "ответ2", ...],
+              "dictionary": [
+                { "question": indexOfQuestions, "answer": indexOfanswers }
+              ]
+            }
+            """,
+
+            ExerciseType.TRUEFALSE, """
+            Если это упражнение True/False, то необходимо вернуть JSON с текстом, вопросами и ответами.
+            Формат JSON:
+            {
+              "type": "True/False",
+              "createdText": "Сгенерированный текст",
+              "questions": ["вопрос1 к тексту", "вопрос2 к тексту", ...],
+              "answers": ["TRUE", "FALSE", ...],
+              "dictionary": [
+                { "question": "вопрос1 к тексту", "answer": "TRUE" }
+              ]
+            }
+            """
+    );
+
     @SneakyThrows
     private String createRequestBody(String prompt) {
         String body = objectMapper.writeValueAsString(Map.of(
@@ -44,29 +114,138 @@ public class GptRequestService {
                         "content", prompt
                 ))
         ));
-        log.info("Request body: {}", body);
+        if (log.isDebugEnabled()) {
+            log.debug("Request body: {}", LogRedactor.forLog(body, LOG_BODY_MAX_CHARS));
+        }
         return body;
     }
 
-    public Mono<String> sendRequest(String prompt) {
+    public Mono<LlmResponse> sendRequest(String prompt) {
+        return sendRequest(prompt, EXERCISE_TYPE_AUTO);
+    }
+
+    /**
+     * Ответ модели: тело и его JSON-дерево, разобранное один раз (null, если тело не JSON).
+     * По дереву читаются usage и choices[0].message.content.
+     */
+    public record LlmResponse(String body, JsonNode json) {
+    }
+
+    /**
+     * Запрос к модели. Время запроса (llm.request) и расход токенов (llm.tokens) пишутся в метрики
+     * с тегами model и exercise.type. Запрос - клиентский span llm.request, контекст трейса уходит
+     * провайдеру в заголовке traceparent.
+     */
+    public Mono<LlmResponse> sendRequest(String prompt, String exerciseType) {
         String requestBody = createRequestBody(prompt);
         logRequestDetails();
+        // Родитель фиксируется в потоке вызова: подписка и колбэки WebClient идут в потоках Netty
+        Context parent = Context.current();
+
+        return Mono.defer(() -> {
+            Span span = tracer.spanBuilder("llm.request")
+                    .setParent(parent)
+                    .setSpanKind(SpanKind.CLIENT)
+                    .setAttribute("http.request.method", "POST")
+                    .setAttribute("gen_ai.request.model", MODEL)
+                    .setAttribute("exercise.type", exerciseType)
+                    .startSpan();
+            Context spanContext = parent.with(span);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return webClient.post()
+                    .uri(apiSettings.getApiPath())
+                    .header("Authorization", "Bearer " + apiSettings.getApiKey())
+                    .header("Content-Type", "application/json")
+                    .headers(headers -> propagators.getTextMapPropagator().inject(spanContext, headers, HttpHeaders::set))
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .onStatus(this::isErrorResponse, this::handleErrorResponse)
+                    .bodyToMono(String.class)
+                    .timeout(Duration.ofSeconds(30))
+                    .map(this::parseResponse)
+                    .doOnNext(response -> recordUsage(response.json(), exerciseType, span))
+                    .doOnSuccess(body -> sample.stop(requestTimer(exerciseType, "success")))
+                    .doOnError(error -> {
+                        sample.stop(requestTimer(exerciseType, outcome(error)));
+                        if (error instanceof WebClientResponseException e) {
+                            span.setAttribute("http.response.status_code", e.getStatusCode().value());
+                        }
+                        span.recordException(error);
+                        span.setStatus(StatusCode.ERROR);
+                    })
+                    .doOnError(this::logError)
+                    .doFinally(signal -> span.end());
+        });
+    }
+
+    private Timer requestTimer(String exerciseType, String outcome) {
+        return Timer.builder("llm.request")
+                .description("Запрос к LLM API")
+                .tag("model", MODEL)
+                .tag("exercise.type", exerciseType)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String outcome(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        return "error";
+    }
 
-        return webClient.post()
-                .uri(apiSettings.getApiPath())
-                .header("Authorization", "Bearer " + apiSettings.getApiKey())
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .onStatus(this::isErrorResponse, this::handleErrorResponse)
-                .bodyToMono(String.class)
-                .timeout(Duration.ofSeconds(30))
-                .doOnError(this::logError);
+    // Тело не JSON - не ошибка запроса: извлечение JSON отклонит его и запишет llm.json.parse.failures
+    private LlmResponse parseResponse(String body) {
+        try {
+            return new LlmResponse(body, objectMapper.readTree(body));
+        } catch (Exception e) {
+            log.debug("LLM response is not JSON: {}", e.getMessage());
+            return new LlmResponse(body, null);
+        }
+    }
+
+    // Расход токенов из поля usage ответа; отсутствие или битое поле на результат запроса не влияет
+    private void recordUsage(JsonNode json, String exerciseType, Span span) {
+        try {
+            JsonNode usageNode = json == null ? null : json.path("usage");
+            if (usageNode == null || usageNode.isMissingNode() || usageNode.isNull()) {
+                return;
+            }
+            Usage usage = objectMapper.treeToValue(usageNode, Usage.class);
+            tokenCounter(exerciseType, "prompt").increment(usage.getPrompt_tokens());
+            tokenCounter(exerciseType, "completion").increment(usage.getCompletion_tokens());
+            span.setAttribute("gen_ai.usage.input_tokens", usage.getPrompt_tokens());
+            span.setAttribute("gen_ai.usage.output_tokens", usage.getCompletion_tokens());
+        } catch (Exception e) {
+            log.debug("Could not read token usage: {}", e.getMessage());
+        }
+    }
+
+    private Counter tokenCounter(String exerciseType, String tokenType) {
+        return Counter.builder("llm.tokens")
+                .description("Токены, израсходованные на запросы к LLM")
+                .tag("model", MODEL)
+                .tag("exercise.type", exerciseType)
+                .tag("type", tokenType)
+                .register(meterRegistry);
+    }
+
+    private void recordParseFailure(String stage) {
+        Counter.builder("llm.json.parse.failures")
+                .description("Ответы LLM, из которых не удалось получить JSON упражнения")
+                .tag("model", MODEL)
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .increment();
     }
 
     private void logRequestDetails() {
-        log.info("API Path: {}", apiSettings.getApiPath());
-        log.info("API Key: {}", apiSettings.getApiKey() != null ? "[PROVIDED]" : "[NOT SET]");
+        log.debug("API Path: {}, API Key: {}", apiSettings.getApiPath(),
+                apiSettings.getApiKey() != null ? "[PROVIDED]" : "[NOT SET]");
     }
 
     private boolean isErrorResponse(org.springframework.http.HttpStatusCode status) {
@@ -77,10 +256,9 @@ public class GptRequestService {
         return response.bodyToMono(String.class)
                 .defaultIfEmpty("No error body")
                 .flatMap(body -> {
-                    log.error("API error: status={}, headers={}, body={}",
+                    log.error("API error: status={}, body={}",
                             response.statusCode(),
-                            response.headers().asHttpHeaders(),
-                            body);
+                            LogRedactor.forLog(body, LOG_BODY_MAX_CHARS));
                     return Mono.error(new WebClientResponseException(
                             response.statusCode().value(),
                             "API Error",
@@ -93,10 +271,9 @@ public class GptRequestService {
 
     private void logError(Throwable error) {
         if (error instanceof WebClientResponseException e) {
-            log.error("API error: status={}, headers={}, body={}",
+            log.error("API error: status={}, body={}",
                     e.getRawStatusCode(),
-                    e.getHeaders(),
-                    e.getResponseBodyAsString());
+                    LogRedactor.forLog(e.getResponseBodyAsString(), LOG_BODY_MAX_CHARS));
         } else {
             log.error("Request failed", error);
         }
@@ -104,19 +281,30 @@ public class GptRequestService {
 
     @Deprecated
     public String sendRequestBlocking(String prompt) {
-        return sendRequest(prompt)
+        LlmResponse response = sendRequest(prompt)
                 .block(Duration.ofSeconds(30));
+        return response != null ? response.body() : null;
     }
 
     public ExerciseDto createRecognizedExercise(String recognizedText, User user) {
-        String prompt = buildOcrPrompt(recognizedText);
+        OcrPrompt prompt = Spans.inSpan(tracer, "llm.prompt.build", span -> {
+            // Механические артефакты OCR убираем локально, LLM остаётся только смысловая очистка
+            String normalizedText = ocrTextNormalizer.normalize(recognizedText);
+            log.info("OCR text normalized from {} to {} chars", recognizedText.length(), normalizedText.length());
+            ExerciseTypeClassifier.Classification classification = exerciseTypeClassifier.classify(normalizedText);
+            String exerciseType = exerciseTypeClassifier.isConfident(classification)
+                    ? classification.type().getName()
+                    : EXERCISE_TYPE_AUTO;
+            span.setAttribute("exercise.type", exerciseType);
+            return new OcrPrompt(buildOcrPrompt(normalizedText, classification), exerciseType);
+        });
 
         try {
-            String result = sendRequest(prompt).block();
+            LlmResponse result = sendRequest(prompt.text(), prompt.exerciseType()).block();
             ExerciseDto cleanResult = cleanJsonBody(result);
 
             ExerciseTableRecord exerciseRecord = ExerciseTableRecord.fromDto(cleanResult, user);
-            exerciseRepository.save(exerciseRecord);
+            Spans.runInSpan(tracer, "db.exercise.save", span -> exerciseRepository.save(exerciseRecord));
 
             return cleanResult;
         } catch (Exception e) {
@@ -124,49 +312,26 @@ public class GptRequestService {
         }
     }
 
-    private String buildOcrPrompt(String recognizedText) {
-        Map<String, String> exerciseTemplates = Map.of(
-                "Fill The Gaps", """
-            Если это упражнение "Fill The Gaps", то необходимо вернуть JSON с вопросами и ответами.
-            Пробелы куда надо вставить всегда должны быть обозначены как "_____" (пять подчеркиваний).
-            Пожалуйста перемешай правильные ответы, чтоб они шли не по порядку.
-            Формат JSON:
-            {
-                "type": "Fill The Gaps",
-                "questions": ["вопрос1", "вопрос2", ...],
-                "answers": ["ответ1", "ответ2", ...],
-                "dictionary": [ { "question": indexOfQuestions, "answer": indexOfanswers } ]
-            }
-            """,
-
-                "Match The Sentence", """
-            Если это упражнение Match the Sentences, то необходимо вернуть JSON с вопросами и ответами.
-            Пожалуйста перемешай правильные ответы, чтоб они шли не по порядку.
-            Формат JSON:
-            {
-              "type": "Match The Sentence",
-              "questions": ["вопрос1", "вопрос2", ...],
-              "answers": ["ответ1", "ответ2", ...],
-              "dictionary": [
-                { "question": indexOfQuestions, "answer": indexOfanswers }
-              ]
-            }
-            """,
+    private record OcrPrompt(String text, String exerciseType) {
+    }
 
-                "True/False", """
-            Если это упражнение True/False, то необходимо вернуть JSON с текстом, вопросами и ответами.
-            Формат JSON:
-            {
-              "type": "True/False",
-              "createdText": "Сгенерированный текст",
-              "questions": ["вопрос1 к тексту", "вопрос2 к тексту", ...],
-              "answers": ["TRUE", "FALSE", ...],
-              "dictionary": [
-                { "question": "вопрос1 к тексту", "answer": "TRUE" }
-              ]
-            }
-            """
-        );
+    private String buildOcrPrompt(String recognizedText, ExerciseTypeClassifier.Classification classification) {
+        // Тип уверенно определён локально - отправляем только его шаблон
+        if (exerciseTypeClassifier.isConfident(classification)) {
+            ExerciseType type = classification.type();
+            log.info("OCR exercise pre-classified as {} (confidence {})", type.getName(), classification.confidence());
+
+            return """
+            Очистить текст от артефактов распознавания.
+            Нужно найти логическое начало и конец упражнения. Тебя интересует исключительно упражнение определенного типа.
+            Всё что находится на странице помимо искомого упражнения - можно отбросить и не обращать внимание.
+            Строго следуй структуре JSON файла. Не придумывай дополнительных полей. Используй названия полей как в примере.
+            """ + OCR_EXERCISE_TEMPLATES.get(type) + """
+            Не дублируй поля два раза. Проследи, чтоб JSON мог корректно сериализоваться.
+
+            Распознанный текст:
+            """ + recognizedText;
+        }
 
         StringBuilder prompt = new StringBuilder("""
         Очистить текст от артефактов распознавания.
@@ -179,8 +344,8 @@ public class GptRequestService {
         """);
 
         // Динамически добавляем все шаблоны
-        exerciseTemplates.forEach((type, template) -> {
-            prompt.append("\n--- ").append(type).append(" ---\n");
+        OCR_EXERCISE_TEMPLATES.forEach((type, template) -> {
+            prompt.append("\n--- ").append(type.getName()).append(" ---\n");
             prompt.append(template).append("\n");
         });
 
@@ -195,11 +360,12 @@ public class GptRequestService {
         return prompt.toString();
     }
 
-    public ExerciseDto cleanJsonBody(String result) {
-        log.info("Starting cleanJsonBody with input text: {}", result);
+    public ExerciseDto cleanJsonBody(LlmResponse result) {
+        if (log.isDebugEnabled()) {
+            log.debug("Starting cleanJsonBody with input text: {}", LogRedactor.forLog(result.body(), LOG_BODY_MAX_CHARS));
+        }
         try {
             String jsonString = extractJsonFromContent(result);
-            log.info("Extracted JSON: {}", jsonString);
 
             JsonNode node = objectMapper.readTree(jsonString);
             String type = node.path("type").asText();
@@ -216,10 +382,11 @@ public class GptRequestService {
                     response = objectMapper.readValue(jsonString, ExerciseDto.class);
             }
 
-            log.info("Successfully parsed API response into GptResponseDto: {}", response);
+            log.debug("Parsed API response into {}", response.getClass().getSimpleName());
             return response;
         } catch (Exception e) {
-            log.error("Error parsing API response into GptResponseDto: {}", result, e);
+            recordParseFailure("deserialize");
+            log.error("Error parsing API response into GptResponseDto: {}", LogRedactor.forLog(result.body(), LOG_BODY_MAX_CHARS), e);
             throw new RuntimeException("Ошибка при разборе JSON", e);
         }
     }
@@ -314,40 +481,50 @@ public class GptRequestService {
             default -> throw new UnsupportedOperationException("Unsupported exercise type: " + exerciseType);
         }
 
-        String response;
+        LlmResponse response;
         try {
-            response = sendRequest(prompt).block();
-            log.info("Response from GPT: {}", response);
+            response = sendRequest(prompt, exerciseType.getName()).block();
+            if (log.isDebugEnabled() && response != null) {
+                log.debug("Response from GPT: {}", LogRedactor.forLog(response.body(), LOG_BODY_MAX_CHARS));
+            }
         } catch (Exception e) {
             log.error("Failed to get response from GPT: {}", e.getMessage());
             throw new RuntimeException("Ошибка при запросе к GPT API", e);
         }
 
         String jsonString = extractJsonFromContent(response);
-        log.info("Extracted JSON: {}", jsonString);
 
         try {
             GenerationExerciseDto generationExerciseDto = objectMapper.readValue(jsonString, dtoClass);
-            log.info("Created {} exercise: {}", exerciseType.getName(), generationExerciseDto);
-
-            log.info("Generated exercise {} for user {}, not saving yet", exerciseType.getName(), user.getEmail());
+            log.info("Generated exercise {} for user {}, not saving yet", exerciseType.getName(), user.getId());
 
             return generationExerciseDto;
         } catch (Exception e) {
-            log.error("Error parsing JSON to {}: {}, error: {}", dtoClass.getSimpleName(), jsonString, e.getMessage());
+            recordParseFailure("deserialize");
+            log.error("Error parsing JSON to {}: {}, error: {}", dtoClass.getSimpleName(),
+                    LogRedactor.forLog(jsonString, LOG_BODY_MAX_CHARS), e.getMessage());
             throw new RuntimeException("Ошибка при разборе ответа GPT", e);
         }
     }
 
-    private String extractJsonFromContent(String response) {
+    private String extractJsonFromContent(LlmResponse response) {
+        return Spans.inSpan(tracer, "llm.json.extract", span -> extractJson(response));
+    }
+
+    // Конверт ответа уже разобран в sendRequest; здесь разбирается только содержимое content
+    private String extractJson(LlmResponse response) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String body = response != null ? response.body() : null;
         try {
-            if (response != null && response.contains("\"type\"")) {
-                String cleanedResponse = removeDuplicateKey(response, "type");
+            if (body != null && body.contains("\"type\"")) {
+                String cleanedResponse = removeDuplicateKey(body, "type");
                 objectMapper.readTree(cleanedResponse);
                 return cleanedResponse.trim();
             }
-            JsonNode jsonNode = objectMapper.readTree(response);
-            String content = jsonNode.path("choices")
+            if (response == null || response.json() == null) {
+                throw new RuntimeException("Ответ GPT не является JSON");
+            }
+            String content = response.json().path("choices")
                     .path(0)
                     .path("message")
                     .path("content")
@@ -362,8 +539,15 @@ public class GptRequestService {
             objectMapper.readTree(cleanedContent);
             return cleanedContent;
         } catch (Exception e) {
-            log.error("Error extracting JSON from GPT response: {}, error: {}", response, e.getMessage());
+            recordParseFailure("extract");
+            log.error("Error extracting JSON from GPT response: {}, error: {}",
+                    LogRedactor.forLog(body, LOG_BODY_MAX_CHARS), e.getMessage());
             throw new RuntimeException("Ошибка при извлечении JSON из ответа GPT", e);
+        } finally {
+            sample.stop(Timer.builder("llm.json.extraction")
+                    .description("Извлечение и проверка JSON из ответа LLM")
+                    .tag("model", MODEL)
+                    .register(meterRegistry));
         }
     }
 
@@ -1,5 +1,8 @@
 package com.miaai.language_helper.service;
 
+import com.miaai.language_helper.config.AccessLogFilter;
+import com.miaai.language_helper.config.auth.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +10,8 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,28 +20,24 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final JwtService jwtService;
+    private final JwtVerifier jwtVerifier;
     private final UserDetailsService userDetailsService;
+    private final UserStatusCache userStatusCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
-        // Добавляем подробное логирование для диагностики
-        log.info("=== JWT FILTER DEBUG ===");
-        log.info("Request URI: {}", request.getRequestURI());
-        log.info("Request Method: {}", request.getMethod());
-
         // Пропускаем OPTIONS-запросы для CORS
         if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
-            log.info("Skipping OPTIONS request");
             filterChain.doFilter(request, response);
             return;
         }
@@ -45,54 +46,71 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         // Публичные endpoint'ы
         if (isPublicEndpoint(requestURI)) {
-            log.info("Public endpoint - skipping JWT check: {}", requestURI);
             filterChain.doFilter(request, response);
             return;
         }
 
         final String authHeader = request.getHeader("Authorization");
-        log.info("Authorization header: {}", authHeader);
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            log.warn("No Bearer token found for protected endpoint: {}", requestURI);
+            log.debug("No Bearer token for protected endpoint: {}", requestURI);
             filterChain.doFilter(request, response); // Spring Security сам вернёт 401/403 при необходимости
             return;
         }
 
         try {
             String token = authHeader.substring(7);
-            log.info("JWT token length: {}", token.length());
 
-            String email = jwtService.extractEmail(token);
-            log.info("Extracted email from token: {}", email);
+            Claims claims = jwtVerifier.verify(token);
+            String email = claims.getSubject();
 
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                log.info("Loading user details for: {}", email);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                log.info("User details loaded successfully: {}", userDetails.getUsername());
-
-                if (jwtService.isTokenValid(token, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                UsernamePasswordAuthenticationToken authToken = claims.get(JwtService.CLAIM_USER_ID) != null
+                        ? fromClaims(claims, email)
+                        : fromUserDetails(email);
+                if (authToken != null) {
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
-                    log.info("Authentication SUCCESS for: {}", email);
+                    if (authToken.getPrincipal() instanceof AuthenticatedUser user) {
+                        request.setAttribute(AccessLogFilter.USER_ID_ATTRIBUTE, user.id());
+                    }
                 } else {
-                    log.error("Token INVALID for: {}", email);
+                    log.warn("Token of disabled or removed user rejected");
                 }
-            } else {
-                log.warn("Email is null or user already authenticated");
             }
         } catch (Exception e) {
-            log.error("JWT processing error for {}: {}", requestURI, e.getMessage(), e);
+            // Просроченный или подделанный токен - обычная ситуация, стектрейс не нужен
+            log.debug("JWT rejected for {}: {}", requestURI, e.getMessage());
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid JWT");
             return;
         }
 
-        log.info("=== END JWT FILTER DEBUG ===");
         filterChain.doFilter(request, response);
     }
 
+    // Токен с uid/roles: подпись и срок уже проверены, из БД (через кэш) берётся только флаг enabled
+    private UsernamePasswordAuthenticationToken fromClaims(Claims claims, String email) {
+        Long userId = claims.get(JwtService.CLAIM_USER_ID, Long.class);
+        if (!userStatusCache.isActive(userId)) {
+            return null;
+        }
+        List<?> roles = claims.get(JwtService.CLAIM_ROLES, List.class);
+        List<GrantedAuthority> authorities = roles == null ? List.of() : roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
+        return new UsernamePasswordAuthenticationToken(new AuthenticatedUser(userId, email), null, authorities);
+    }
+
+    // Токены, выданные до появления claims, проверяются как раньше - через загрузку пользователя
+    private UsernamePasswordAuthenticationToken fromUserDetails(String email) {
+        log.debug("Loading user details for legacy token");
+        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        if (!userDetails.isEnabled()) {
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
     private boolean isPublicEndpoint(String requestURI) {
         return requestURI.startsWith("/api/public/") ||
                 requestURI.startsWith("/api/authenticate") ||
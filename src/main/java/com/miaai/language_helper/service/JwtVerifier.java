@@ -0,0 +1,128 @@
+package com.miaai.language_helper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка JWT: ключ и парсер создаются один раз, токен разбирается и проверяется один раз за запрос.
+ * Недавно проверенные токены хранятся в ограниченном кэше (ключ - SHA-256 токена, значение - claims)
+ * до истечения срока токена, повторный запрос с тем же токеном обходится без HMAC и разбора JSON.
+ * Время проверки пишется в auth.jwt.verify с тегом result: hit (из кэша), miss (проверен заново), invalid.
+ */
+@Component
+@RequiredArgsConstructor
+public class JwtVerifier {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private Cache<String, Claims> verified;
+    private Timer hitTimer;
+    private Timer missTimer;
+    private Timer invalidTimer;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
+        hitTimer = verifyTimer("hit");
+        missTimer = verifyTimer("miss");
+        invalidTimer = verifyTimer("invalid");
+    }
+
+    private Timer verifyTimer(String result) {
+        return Timer.builder("auth.jwt.verify")
+                .description("Проверка JWT")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    SecretKey signingKey() {
+        return signingKey;
+    }
+
+    /**
+     * Проверяет подпись и срок действия и возвращает claims.
+     * Просроченный или подделанный токен - исключение JwtException.
+     */
+    public Claims verify(String token) {
+        long start = System.nanoTime();
+        String key = sha256(token);
+        Claims claims = verified.getIfPresent(key);
+        if (claims != null) {
+            hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return claims;
+        }
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (RuntimeException e) {
+            invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        verified.put(key, claims);
+        missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return claims;
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Запись живёт до exp токена: просроченный токен из кэша не достаётся и проверяется заново (и отклоняется)
+    private static final class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long millis = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.miaai.language_helper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проверка пароля при входе вне потоков Tomcat.
+ * BCrypt выполняется в отдельном ограниченном пуле: при переполнении очереди вход сразу отклоняется (503),
+ * остальные эндпоинты продолжают обслуживаться. Неудачные попытки ограничиваются по аккаунту и по IP:
+ * попытка занимает место в счётчике до отправки в пул и освобождает его при успехе, поэтому параллельные
+ * запросы не проходят мимо порога, пока идёт хэширование. Успешный вход на короткое время запоминается,
+ * повторный вход с теми же данными не хэширует пароль заново.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LoginService {
+
+    private final AuthenticationManager authenticationManager;
+
+    @Value("${auth.hash-threads:2}")
+    private int hashThreads;
+
+    @Value("${auth.hash-queue-size:64}")
+    private int hashQueueSize;
+
+    // Окно и пороги неудачных попыток
+    @Value("${auth.throttle.window-minutes:15}")
+    private long throttleWindowMinutes;
+
+    @Value("${auth.throttle.max-failures-per-account:10}")
+    private int maxFailuresPerAccount;
+
+    // Через один IP (NAT школы) входит много учеников, поэтому порог выше
+    @Value("${auth.throttle.max-failures-per-ip:100}")
+    private int maxFailuresPerIp;
+
+    @Value("${auth.success-cache.ttl-seconds:60}")
+    private long successCacheTtlSeconds;
+
+    private ThreadPoolExecutor hashExecutor;
+    private Cache<String, AtomicInteger> failuresByAccount;
+    private Cache<String, AtomicInteger> failuresByIp;
+    private Cache<String, Authentication> recentLogins;
+    private SecretKeySpec loginCacheKey;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        hashExecutor = new ThreadPoolExecutor(hashThreads, hashThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hashQueueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Duration window = Duration.ofMinutes(throttleWindowMinutes);
+        failuresByAccount = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(window).build();
+        failuresByIp = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(window).build();
+        recentLogins = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofSeconds(successCacheTtlSeconds))
+                .build();
+
+        // Ключ кэша - HMAC от email и пароля со случайным ключом процесса: сам пароль в памяти не хранится
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        loginCacheKey = new SecretKeySpec(secret, "HmacSHA256");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    /**
+     * Проверяет учётные данные в пуле хэширования.
+     *
+     * @throws LoginThrottledException   слишком много неудачных попыток для аккаунта или IP
+     * @throws LoginOverloadedException  очередь проверки паролей заполнена
+     */
+    public CompletableFuture<Authentication> authenticate(String email, String password, String clientIp) {
+        String account = email == null ? "" : email.trim().toLowerCase();
+        AtomicInteger accountAttempts = reserveAttempt(failuresByAccount, account, maxFailuresPerAccount);
+        AtomicInteger ipAttempts;
+        try {
+            ipAttempts = reserveAttempt(failuresByIp, clientIp, maxFailuresPerIp);
+        } catch (LoginThrottledException e) {
+            releaseAttempt(accountAttempts);
+            throw e;
+        }
+
+        String cacheKey = loginCacheKey(account, password);
+        Authentication cached = recentLogins.getIfPresent(cacheKey);
+        if (cached != null) {
+            releaseAttempt(accountAttempts);
+            releaseAttempt(ipAttempts);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> authenticationManager.authenticate(
+                            new UsernamePasswordAuthenticationToken(email, password)), hashExecutor)
+                    .whenComplete((authentication, error) -> {
+                        if (error == null) {
+                            recentLogins.put(cacheKey, authentication);
+                            failuresByAccount.invalidate(account);
+                            releaseAttempt(ipAttempts);
+                        } else if (!(unwrap(error) instanceof BadCredentialsException)) {
+                            // Неверный пароль оставляет попытку засчитанной, прочие ошибки - не попытка подбора
+                            releaseAttempt(accountAttempts);
+                            releaseAttempt(ipAttempts);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            releaseAttempt(accountAttempts);
+            releaseAttempt(ipAttempts);
+            log.debug("Login queue is full ({} waiting), rejecting login", hashExecutor.getQueue().size());
+            throw new LoginOverloadedException();
+        }
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // Попытка засчитывается заранее как неудачная: проверка и увеличение счётчика атомарны
+    private AtomicInteger reserveAttempt(Cache<String, AtomicInteger> failures, String key, int max) {
+        AtomicInteger count = failures.get(key, k -> new AtomicInteger());
+        if (count.incrementAndGet() > max) {
+            count.decrementAndGet();
+            throw new LoginThrottledException(Duration.ofMinutes(throttleWindowMinutes).toSeconds());
+        }
+        return count;
+    }
+
+    private static void releaseAttempt(AtomicInteger count) {
+        count.updateAndGet(value -> Math.max(0, value - 1));
+    }
+
+    private String loginCacheKey(String account, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(loginCacheKey);
+            mac.update(account.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            byte[] digest = mac.doFinal(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    public static class LoginThrottledException extends RuntimeException {
+        @Getter
+        private final long retryAfterSeconds;
+
+        public LoginThrottledException(long retryAfterSeconds) {
+            super("Too many failed login attempts");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    public static class LoginOverloadedException extends RuntimeException {
+        public LoginOverloadedException() {
+            super("Login queue is full");
+        }
+    }
+}
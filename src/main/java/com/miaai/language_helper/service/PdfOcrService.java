@@ -1,10 +1,16 @@
 package com.miaai.language_helper.service;
 
+import com.miaai.language_helper.util.Spans;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -16,8 +22,11 @@ import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -40,12 +49,53 @@ public class PdfOcrService {
     @Value("${ocr.max-image-height:1200}")
     private int maxImageHeight;
 
+    // Распознавать страницы по одной и останавливаться, как только упражнение найдено целиком
+    @Value("${ocr.incremental.enabled:true}")
+    private boolean incrementalByDefault;
+
+    // Пул инициализированных TessBaseAPI (TesseractEngine) вместо нового Tesseract на каждую страницу
+    @Value("${ocr.native-engine.enabled:true}")
+    private boolean nativeEngineEnabled;
+
+    private final ExerciseStructureDetector exerciseStructureDetector;
+    private final TesseractEngine tesseractEngine;
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    // Время на страницу: рендер PDF в растр и распознавание Tesseract
+    private Timer pageRenderTimer;
+    private Timer pageRecognizeTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        pageRenderTimer = Timer.builder("ocr.page.render")
+                .description("Рендер страницы PDF в растр")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        pageRecognizeTimer = Timer.builder("ocr.page.recognize")
+                .description("Распознавание одной страницы/изображения")
+                .tag("engine", nativeEngineEnabled ? "native" : "tess4j")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     // Поддерживаемые форматы изображений
     private static final List<String> SUPPORTED_IMAGE_FORMATS = Arrays.asList(
             "jpg", "jpeg", "png", "bmp", "gif", "tiff", "tif"
     );
 
     public String extractText(MultipartFile file) {
+        return extractText(file, null, null, null);
+    }
+
+    /**
+     * @param pageFrom    первая страница PDF (с 1), null - с начала
+     * @param pageTo      последняя страница PDF включительно, null - до ocr.max-pages
+     * @param incremental ранняя остановка OCR, null - значение ocr.incremental.enabled
+     */
+    public String extractText(MultipartFile file, Integer pageFrom, Integer pageTo, Boolean incremental) {
+        validatePageRange(pageFrom, pageTo);
+
         if (file == null || file.isEmpty()) {
             log.warn("Empty or null file provided");
             return "";
@@ -59,16 +109,13 @@ public class PdfOcrService {
             // Создаем временный файл
             String extension = getFileExtension(filename);
             tempFile = File.createTempFile("ocr_", "." + extension);
-            file.transferTo(tempFile);
-
-            // Определяем тип файла и обрабатываем соответствующим образом
-            if (isPdfFile(filename)) {
-                return extractTextFromPdf(tempFile);
-            } else if (isImageFile(filename)) {
-                return extractTextFromImage(tempFile);
-            } else {
-                throw new IllegalArgumentException("Unsupported file format: " + filename);
-            }
+            File spoolFile = tempFile;
+            Spans.runInSpan(tracer, "upload.spool", span -> {
+                span.setAttribute("file.size", file.getSize());
+                file.transferTo(spoolFile);
+            });
+
+            return extractText(tempFile, filename, pageFrom, pageTo, incremental);
 
         } catch (IOException e) {
             log.error("IO error during file processing: {}", e.getMessage());
@@ -83,10 +130,33 @@ public class PdfOcrService {
         }
     }
 
-    private String extractTextFromPdf(File pdfFile) {
-        StringBuilder result = new StringBuilder();
+    /**
+     * Распознаёт уже сохранённый на диск файл (например, собранный из чанков). Файл не удаляется.
+     *
+     * @param filename исходное имя файла - по расширению определяется PDF или изображение
+     */
+    public String extractText(File file, String filename, Integer pageFrom, Integer pageTo, Boolean incremental) {
+        validatePageRange(pageFrom, pageTo);
+
+        // Определяем тип файла и обрабатываем соответствующим образом
+        if (isPdfFile(filename)) {
+            return extractTextFromPdf(file, pageFrom, pageTo,
+                    incremental != null ? incremental : incrementalByDefault);
+        } else if (isImageFile(filename)) {
+            return extractTextFromImage(file);
+        } else {
+            throw new IllegalArgumentException("Unsupported file format: " + filename);
+        }
+    }
+
+    private void validatePageRange(Integer pageFrom, Integer pageTo) {
+        if (pageFrom != null && pageFrom < 1 || pageTo != null && pageTo < (pageFrom != null ? pageFrom : 1)) {
+            throw new IllegalArgumentException("Invalid page range: " + pageFrom + "-" + pageTo);
+        }
+    }
 
-        try (PDDocument document = PDDocument.load(pdfFile)) {
+    private String extractTextFromPdf(File pdfFile, Integer pageFrom, Integer pageTo, boolean incremental) {
+        try (PDDocument document = Spans.inSpan(tracer, "ocr.pdf.load", span -> PDDocument.load(pdfFile))) {
             int totalPages = document.getNumberOfPages();
             if (totalPages == 0) {
                 log.warn("PDF has no pages");
@@ -94,15 +164,25 @@ public class PdfOcrService {
             }
 
             // Ограничиваем количество обрабатываемых страниц
-            int pagesToProcess = Math.min(totalPages, maxPages);
-            log.info("Starting OCR for {} of {} pages", pagesToProcess, totalPages);
+            int firstPage = pageFrom != null ? pageFrom - 1 : 0;
+            int lastPage = Math.min(pageTo != null ? pageTo : totalPages, totalPages) - 1;
+            lastPage = Math.min(lastPage, firstPage + maxPages - 1);
+            if (firstPage > lastPage) {
+                log.warn("Page range {}-{} is outside of {} PDF pages", pageFrom, pageTo, totalPages);
+                return "";
+            }
+            log.info("Starting OCR for pages {}-{} of {} (incremental: {})", firstPage + 1, lastPage + 1, totalPages, incremental);
 
             PDFRenderer pdfRenderer = new PDFRenderer(document);
+            List<String> pageTexts = new ArrayList<>();
+            // Индексы в pageTexts страниц с ошибкой OCR: заглушка вместо текста не должна завершать упражнение
+            Set<Integer> failedPages = new HashSet<>();
+            ExerciseStructureDetector.Detection detection = null;
 
-            for (int page = 0; page < pagesToProcess; ++page) {
+            for (int page = firstPage; page <= lastPage; ++page) {
                 try {
                     String pageText = processPdfPage(pdfRenderer, page);
-                    result.append(pageText).append("\n\n--- Page ").append(page + 1).append(" ---\n\n");
+                    pageTexts.add(pageText);
                     log.debug("Extracted {} chars from page {}", pageText.length(), page + 1);
 
                     // Принудительная сборка мусора после каждой страницы для больших PDF
@@ -112,18 +192,36 @@ public class PdfOcrService {
 
                 } catch (Exception e) {
                     log.error("Error processing page {}: {}", page + 1, e.getMessage());
-                    result.append("\n[Error processing page ").append(page + 1).append("]\n");
+                    failedPages.add(pageTexts.size());
+                    pageTexts.add("\n[Error processing page " + (page + 1) + "]\n");
+                }
+
+                if (incremental) {
+                    detection = exerciseStructureDetector.detect(pageTexts, failedPages);
+                    if (detection.complete()) {
+                        log.info("Exercise found on pages {}-{}, stopping OCR after page {}",
+                                firstPage + detection.firstPage() + 1, firstPage + detection.lastPage() + 1, page + 1);
+                        break;
+                    }
                 }
             }
 
-            log.info("OCR completed: {} pages processed, total {} chars", pagesToProcess, result.length());
+            // В LLM передаём только страницы, на которых нашлось упражнение
+            int relevantFrom = detection != null && detection.complete() ? detection.firstPage() : 0;
+            int relevantTo = detection != null && detection.complete() ? detection.lastPage() : pageTexts.size() - 1;
+
+            StringBuilder result = new StringBuilder();
+            for (int i = relevantFrom; i <= relevantTo; i++) {
+                result.append(pageTexts.get(i)).append("\n\n--- Page ").append(firstPage + i + 1).append(" ---\n\n");
+            }
+
+            log.info("OCR completed: {} pages processed, total {} chars", pageTexts.size(), result.length());
+            return result.toString().trim();
 
         } catch (IOException e) {
             log.error("Error loading PDF document: {}", e.getMessage());
             throw new RuntimeException("Ошибка при загрузке PDF документа", e);
         }
-
-        return result.toString().trim();
     }
 
     private String extractTextFromImage(File imageFile) {
@@ -140,8 +238,7 @@ public class PdfOcrService {
             BufferedImage optimizedImage = optimizeImageForOcr(image);
 
             // Выполняем OCR
-            Tesseract tesseract = createTesseractInstance();
-            String result = tesseract.doOCR(optimizedImage);
+            String result = recognize(optimizedImage);
 
             log.info("Image OCR completed: {} chars extracted", result.length());
 
@@ -161,16 +258,27 @@ public class PdfOcrService {
     }
 
     private String processPdfPage(PDFRenderer pdfRenderer, int pageNumber) {
+        return Spans.inSpan(tracer, "ocr.page", span -> {
+            span.setAttribute("page", pageNumber + 1);
+            return renderAndRecognize(pdfRenderer, pageNumber);
+        });
+    }
+
+    private String renderAndRecognize(PDFRenderer pdfRenderer, int pageNumber) {
         BufferedImage image = null;
         try {
-            // Рендерим страницу с оптимизированным DPI
-            image = pdfRenderer.renderImageWithDPI(pageNumber, dpi);
+            // Рендерим страницу с оптимизированным DPI сразу в оттенках серого - такой растр уходит в Tesseract без конвертации
+            image = Spans.inSpan(tracer, "ocr.page.render", span -> {
+                Timer.Sample render = Timer.start(meterRegistry);
+                BufferedImage rendered = pdfRenderer.renderImageWithDPI(pageNumber, dpi, ImageType.GRAY);
+                render.stop(pageRenderTimer);
+                return rendered;
+            });
 
             // Уменьшаем изображение если оно слишком большое
             image = resizeImageIfNeeded(image);
 
-            Tesseract tesseract = createTesseractInstance();
-            return tesseract.doOCR(image);
+            return recognize(image);
 
         } catch (IOException e) {
             log.error("Error rendering page {}: {}", pageNumber + 1, e.getMessage());
@@ -211,6 +319,21 @@ public class PdfOcrService {
         return optimizedImage;
     }
 
+    private String recognize(BufferedImage image) throws TesseractException {
+        return Spans.inSpan(tracer, "ocr.page.recognize", span -> {
+            span.setAttribute("ocr.engine", nativeEngineEnabled ? "native" : "tess4j");
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                if (nativeEngineEnabled) {
+                    return tesseractEngine.recognize(image);
+                }
+                return createTesseractInstance().doOCR(image);
+            } finally {
+                sample.stop(pageRecognizeTimer);
+            }
+        });
+    }
+
     private Tesseract createTesseractInstance() {
         Tesseract tesseract = new Tesseract();
         tesseract.setDatapath(tessdataPath);
@@ -239,7 +362,11 @@ public class PdfOcrService {
         int newWidth = (int) (width * ratio);
         int newHeight = (int) (height * ratio);
 
-        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        // Серые страницы остаются серыми, чтобы не терять прямую передачу растра в Tesseract
+        int imageType = originalImage.getType() == BufferedImage.TYPE_BYTE_GRAY
+                ? BufferedImage.TYPE_BYTE_GRAY
+                : BufferedImage.TYPE_INT_RGB;
+        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, imageType);
         Graphics2D g = resizedImage.createGraphics();
 
         try {
@@ -255,6 +382,10 @@ public class PdfOcrService {
         return resizedImage;
     }
 
+    public boolean isSupportedFile(String filename) {
+        return isPdfFile(filename) || isImageFile(filename);
+    }
+
     // Вспомогательные методы для определения типа файла
     private boolean isPdfFile(String filename) {
         return filename != null && filename.toLowerCase().endsWith(".pdf");
@@ -0,0 +1,104 @@
+package com.miaai.language_helper.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.miaai.language_helper.dto.ExerciseDetailView;
+import com.miaai.language_helper.dto.ExerciseSummaryDto;
+import com.miaai.language_helper.repository.ExerciseRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Кэш готовых JSON-ответов публичных упражнений (Caffeine, W-TinyLFU).
+ * Хранятся сериализованные байты, ограничение - по суммарному размеру.
+ * Загрузка при промахе идёт через Cache.get: параллельные запросы одной ссылки ждут один запрос к БД.
+ * Смена видимости и правки упражнения вызывают {@link #invalidate(UUID)}; TTL ограничивает устаревание
+ * между экземплярами приложения.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PublicExerciseCache {
+
+    private static final String CACHE_NAME = "public_exercises";
+
+    private final ExerciseRepository exerciseRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${public-exercise.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${public-exercise.cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    private Cache<UUID, CachedExercise> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((UUID uuid, CachedExercise value) -> value.body().length)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    public Optional<CachedExercise> getIfPresent(UUID uuid) {
+        return Optional.ofNullable(cache.getIfPresent(uuid));
+    }
+
+    /**
+     * Из кэша или из БД. Пусто, если упражнение не найдено или не публичное (такие ответы не кэшируются).
+     */
+    public Optional<CachedExercise> get(UUID uuid) {
+        return Optional.ofNullable(cache.get(uuid, this::load));
+    }
+
+    public void invalidate(UUID uuid) {
+        cache.invalidate(uuid);
+    }
+
+    private CachedExercise load(UUID uuid) {
+        Optional<ExerciseDetailView> exerciseOpt = exerciseRepository.findPublicDetailByUuid(uuid);
+        if (exerciseOpt.isEmpty()) {
+            return null;
+        }
+        ExerciseDetailView exercise = exerciseOpt.get();
+
+        // exerciseData - JSONB из базы как есть, без разбора в DTO и повторной сериализации
+        ExerciseSummaryDto dto = ExerciseSummaryDto.builder()
+                .uuid(exercise.getUuid().toString())
+                .type(exercise.getType())
+                .isPublic(exercise.getIsPublic())
+                .exerciseData(exercise.getExerciseData())
+                .createdText(exercise.getCreatedText())
+                .updatedAt(exercise.getUpdatedAt())
+                .build();
+        try {
+            return new CachedExercise(objectMapper.writeValueAsBytes(dto), exercise.getUpdatedAt());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Не удалось сериализовать публичное упражнение " + uuid, e);
+        }
+    }
+
+    public record CachedExercise(byte[] body, LocalDateTime updatedAt) {
+    }
+}
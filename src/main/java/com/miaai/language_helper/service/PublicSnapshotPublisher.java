@@ -0,0 +1,167 @@
+package com.miaai.language_helper.service;
+
+import com.miaai.language_helper.repository.ExerciseRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Публикует готовые JSON-снимки публичных упражнений в общий с nginx том: {uuid}.json и {uuid}.json.gz.
+ * nginx отдаёт их сам (try_files + gzip_static), в приложение приходят только промахи.
+ * Файлы пишутся во временный файл и переносятся атомарным move, чтобы nginx не увидел половину снимка.
+ * Запись и удаление снимка одного uuid сериализованы (полосатая блокировка), а перед записью версия сверяется с БД:
+ * иначе снимок, прочитанный до скрытия упражнения, мог бы записаться после удаления и nginx отдавал бы его вечно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PublicSnapshotPublisher {
+
+    private static final Set<PosixFilePermission> SNAPSHOT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final PublicExerciseCache publicExerciseCache;
+    private final ExerciseRepository exerciseRepository;
+    private final Object[] locks = createLocks();
+
+    @Value("${public-exercise.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${public-exercise.snapshot.dir:/var/lib/language-helper/public}")
+    private String snapshotDir;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (enabled) {
+            Files.createDirectories(Paths.get(snapshotDir));
+            log.info("Public exercise snapshots are written to {}", snapshotDir);
+        }
+    }
+
+    /**
+     * Приводит снимок в соответствие с БД: перезаписывает для публичного упражнения, удаляет для скрытого.
+     * Вызывается после смены видимости и правок, когда запись в кэше уже сброшена.
+     */
+    public void refresh(UUID uuid) {
+        if (!enabled) {
+            return;
+        }
+        Optional<PublicExerciseCache.CachedExercise> exercise = publicExerciseCache.get(uuid);
+        if (exercise.isPresent()) {
+            publish(uuid, exercise.get());
+        } else {
+            remove(uuid);
+        }
+    }
+
+    /**
+     * Записывает снимок, только если упражнение всё ещё публичное и его updated_at совпадает с версией снимка.
+     * Иначе снимок удаляется: следующий запрос уйдёт в приложение и опубликует актуальную версию.
+     */
+    public void publish(UUID uuid, PublicExerciseCache.CachedExercise exercise) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lockFor(uuid)) {
+            Optional<LocalDateTime> current = exerciseRepository.findPublicUpdatedAtByUuid(uuid);
+            if (current.isEmpty() || !current.get().equals(exercise.updatedAt())) {
+                log.debug("Snapshot for {} is stale, removing instead of publishing", uuid);
+                deleteFiles(uuid);
+                return;
+            }
+            writeFiles(uuid, exercise);
+        }
+    }
+
+    public void remove(UUID uuid) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lockFor(uuid)) {
+            deleteFiles(uuid);
+        }
+    }
+
+    private void writeFiles(UUID uuid, PublicExerciseCache.CachedExercise exercise) {
+        try {
+            Path dir = Paths.get(snapshotDir);
+            // Сначала .gz: пока он не заменён, nginx отдаёт старую, но целую пару
+            writeAtomically(dir, uuid + ".json.gz", gzip(exercise.body()));
+            writeAtomically(dir, uuid + ".json", exercise.body());
+            log.debug("Published snapshot for {}", uuid);
+        } catch (IOException e) {
+            // Снимок - только ускорение: без него запрос просто уйдёт в приложение
+            log.warn("Could not publish snapshot for {}: {}", uuid, e.getMessage());
+        }
+    }
+
+    private void deleteFiles(UUID uuid) {
+        try {
+            Path dir = Paths.get(snapshotDir);
+            // Сначала .json: по нему nginx решает, есть ли снимок
+            Files.deleteIfExists(dir.resolve(uuid + ".json"));
+            Files.deleteIfExists(dir.resolve(uuid + ".json.gz"));
+            log.debug("Removed snapshot for {}", uuid);
+        } catch (IOException e) {
+            log.warn("Could not remove snapshot for {}: {}", uuid, e.getMessage());
+        }
+    }
+
+    private Object lockFor(UUID uuid) {
+        return locks[Math.floorMod(uuid.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static Object[] createLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static void writeAtomically(Path dir, String fileName, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(dir, ".snapshot-", ".tmp");
+        try {
+            Files.write(temp, content);
+            // createTempFile создаёт файл 600, а nginx работает под своим пользователем
+            if (Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, SNAPSHOT_PERMISSIONS);
+            }
+            Files.move(temp, dir.resolve(fileName), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,269 @@
+package com.miaai.language_helper.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограничение частоты и дневные квоты LLM-эндпоинтов по пользователю и классу эндпоинта.
+ * Бакет - GCRA (эквивалент token bucket): одно AtomicLong со временем "теоретического прихода", проверка - один CAS.
+ * Дневной расход считается в памяти и сбрасывается в api_usage_daily пакетом по расписанию (write-behind);
+ * на пути запроса обращений к БД нет. Расход за сегодня читается из БД один раз при старте.
+ * Несброшенные дельты хранятся по дню начисления: запрос до полуночи попадает во вчерашнюю строку,
+ * даже если flush выполняется уже после смены дня.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = Duration.ofMinutes(1).toNanos();
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO api_usage_daily (user_id, endpoint_class, day, used) VALUES (?, ?, ?, ?)
+            ON CONFLICT (user_id, endpoint_class, day) DO UPDATE SET used = api_usage_daily.used + EXCLUDED.used
+            """;
+
+    public enum EndpointClass {
+        GENERATION, OCR
+    }
+
+    public record Decision(boolean allowed, long limit, long remaining, long resetSeconds) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // Генерация упражнений: запросов подряд, пополнение в минуту, запросов в сутки
+    @Value("${rate-limit.generation.burst:5}")
+    private int generationBurst;
+
+    @Value("${rate-limit.generation.per-minute:6}")
+    private int generationPerMinute;
+
+    @Value("${rate-limit.generation.daily-quota:200}")
+    private int generationDailyQuota;
+
+    // Распознавание сканов (OCR + очистка через LLM)
+    @Value("${rate-limit.ocr.burst:3}")
+    private int ocrBurst;
+
+    @Value("${rate-limit.ocr.per-minute:2}")
+    private int ocrPerMinute;
+
+    @Value("${rate-limit.ocr.daily-quota:50}")
+    private int ocrDailyQuota;
+
+    private final Map<Long, UserLimits> limits = new ConcurrentHashMap<>();
+    // LocalDate.now() на каждом запросе дороже самой проверки - день пересчитывается только после полуночи
+    private volatile Day day = Day.current();
+    private final Policy[] policies = new Policy[EndpointClass.values().length];
+
+    @PostConstruct
+    void init() {
+        policies[EndpointClass.GENERATION.ordinal()] = new Policy(generationBurst, generationPerMinute, generationDailyQuota);
+        policies[EndpointClass.OCR.ordinal()] = new Policy(ocrBurst, ocrPerMinute, ocrDailyQuota);
+        loadTodayUsage();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    public Decision tryAcquire(long userId, EndpointClass endpointClass) {
+        Policy policy = policies[endpointClass.ordinal()];
+        if (!enabled) {
+            return new Decision(true, policy.burst, policy.burst, 0);
+        }
+        long today = currentDay();
+        UserLimits user = limits.computeIfAbsent(userId, id -> new UserLimits(today));
+        user.rollOver(today);
+        int index = endpointClass.ordinal();
+
+        if (user.used.get(index) >= policy.dailyQuota) {
+            return quotaExceeded(policy);
+        }
+        Decision decision = consumeToken(user.tat, index, policy);
+        if (!decision.allowed()) {
+            return decision;
+        }
+        if (user.used.incrementAndGet(index) > policy.dailyQuota) {
+            user.used.decrementAndGet(index);
+            return quotaExceeded(policy);
+        }
+        // Под блокировкой записи карты: вытеснение в flush не удалит пользователя между проверкой и начислением
+        limits.compute(userId, (id, existing) -> {
+            UserLimits target = existing != null ? existing : user;
+            target.addPending(today, index);
+            return target;
+        });
+        return decision;
+    }
+
+    // GCRA: запрос проходит, если после него "долг" бакета не превышает burst интервалов
+    private static Decision consumeToken(AtomicLongArray tat, int index, Policy policy) {
+        long interval = policy.intervalNanos;
+        long capacity = interval * policy.burst;
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get(index);
+            long next = Math.max(current, now) + interval;
+            long debt = next - now;
+            if (debt > capacity) {
+                long retryNanos = debt - capacity;
+                return new Decision(false, policy.burst, 0, ceilSeconds(retryNanos));
+            }
+            if (tat.compareAndSet(index, current, next)) {
+                return new Decision(true, policy.burst, (capacity - debt) / interval, ceilSeconds(debt));
+            }
+        }
+    }
+
+    private long currentDay() {
+        Day current = day;
+        if (System.currentTimeMillis() >= current.endMillis()) {
+            current = Day.current();
+            day = current;
+        }
+        return current.epochDay();
+    }
+
+    private static Decision quotaExceeded(Policy policy) {
+        LocalDateTime now = LocalDateTime.now();
+        long untilMidnight = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toSeconds() + 1;
+        return new Decision(false, policy.dailyQuota, 0, untilMidnight);
+    }
+
+    private static long ceilSeconds(long nanos) {
+        return (nanos + 999_999_999L) / 1_000_000_000L;
+    }
+
+    /**
+     * Пакетная запись накопленного расхода. При ошибке дельты возвращаются и уйдут следующим пакетом.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.quota.flush-interval-ms:10000}")
+    public void flush() {
+        long today = LocalDate.now().toEpochDay();
+        List<Object[]> batch = new ArrayList<>();
+        List<Runnable> rollback = new ArrayList<>();
+        limits.forEach((userId, user) -> user.pendingByDay.forEach((accrualDay, pending) -> {
+            for (EndpointClass endpointClass : EndpointClass.values()) {
+                int index = endpointClass.ordinal();
+                int delta = pending.getAndSet(index, 0);
+                if (delta > 0) {
+                    batch.add(new Object[]{userId, endpointClass.name(), Date.valueOf(LocalDate.ofEpochDay(accrualDay)), delta});
+                    rollback.add(() -> pending.addAndGet(index, delta));
+                }
+            }
+        }));
+        if (!batch.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+                log.debug("Flushed {} usage rows", batch.size());
+            } catch (Exception e) {
+                rollback.forEach(Runnable::run);
+                log.warn("Could not flush API usage, will retry: {}", e.getMessage());
+            }
+        }
+        // Вчерашние записи без несброшенного расхода больше не нужны. Условие проверяется под блокировкой записи,
+        // как и начисление в tryAcquire, иначе параллельный запрос мог бы добавить дельту в уже удалённую запись
+        for (Long userId : limits.keySet()) {
+            limits.computeIfPresent(userId, (id, user) -> {
+                user.removeFlushedDays();
+                return user.day.get() < today && user.pendingByDay.isEmpty() ? null : user;
+            });
+        }
+    }
+
+    private void loadTodayUsage() {
+        LocalDate today = LocalDate.now();
+        jdbcTemplate.query("SELECT user_id, endpoint_class, used FROM api_usage_daily WHERE day = ?", rs -> {
+            EndpointClass endpointClass;
+            try {
+                endpointClass = EndpointClass.valueOf(rs.getString("endpoint_class"));
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            limits.computeIfAbsent(rs.getLong("user_id"), id -> new UserLimits(today.toEpochDay()))
+                    .used.set(endpointClass.ordinal(), rs.getInt("used"));
+        }, Date.valueOf(today));
+        log.info("Loaded today's API usage for {} users", limits.size());
+    }
+
+    private record Day(long epochDay, long endMillis) {
+        static Day current() {
+            LocalDate today = LocalDate.now();
+            long end = today.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return new Day(today.toEpochDay(), end);
+        }
+    }
+
+    private record Policy(int burst, int perMinute, int dailyQuota, long intervalNanos) {
+        Policy(int burst, int perMinute, int dailyQuota) {
+            this(burst, perMinute, dailyQuota, NANOS_PER_MINUTE / perMinute);
+        }
+    }
+
+    private static final class UserLimits {
+        private final AtomicLongArray tat = new AtomicLongArray(EndpointClass.values().length);
+        private final AtomicIntegerArray used = new AtomicIntegerArray(EndpointClass.values().length);
+        // День начисления -> несброшенные дельты по классам; меняется только под блокировкой записи в limits
+        private final Map<Long, AtomicIntegerArray> pendingByDay = new ConcurrentHashMap<>();
+        private final AtomicLong day;
+
+        private UserLimits(long day) {
+            this.day = new AtomicLong(day);
+            long now = System.nanoTime();
+            for (int i = 0; i < tat.length(); i++) {
+                tat.set(i, now);
+            }
+        }
+
+        // Новый день - дневной счётчик с нуля; несброшенные дельты остаются под своим днём и уйдут следующим flush
+        private void rollOver(long today) {
+            long current = day.get();
+            if (current != today && day.compareAndSet(current, today)) {
+                for (int i = 0; i < used.length(); i++) {
+                    used.set(i, 0);
+                }
+            }
+        }
+
+        private void addPending(long accrualDay, int index) {
+            pendingByDay.computeIfAbsent(accrualDay, d -> new AtomicIntegerArray(EndpointClass.values().length))
+                    .incrementAndGet(index);
+        }
+
+        private void removeFlushedDays() {
+            pendingByDay.values().removeIf(pending -> {
+                for (int i = 0; i < pending.length(); i++) {
+                    if (pending.get(i) != 0) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+    }
+}
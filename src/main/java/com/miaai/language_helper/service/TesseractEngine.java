@@ -0,0 +1,224 @@
+package com.miaai.language_helper.service;
+
+import com.sun.jna.Pointer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI1;
+import net.sourceforge.tess4j.TesseractException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптер к нативному TessBaseAPI без обёртки Tesseract.doOCR.
+ * Инициализированные TessBaseAPI (загрузка eng+rus моделей - самая дорогая часть) лежат в пуле фиксированного размера
+ * ocr.native-engine.pool-size: OCR вызывается из потоков Tomcat, и хэндл на каждый поток не ограничивал бы нативную память.
+ * Вызов берёт хэндл из пула (или ждёт свободный) вместе с переиспользуемым direct ByteBuffer,
+ * в который байты растра копируются напрямую из DataBufferByte.
+ * 8-битные (TYPE_BYTE_GRAY) и 1-битные (TYPE_BYTE_BINARY) изображения передаются без промежуточного BufferedImage.
+ */
+@Slf4j
+@Component
+public class TesseractEngine {
+
+    private static final String LANGUAGE = "eng+rus";
+
+    @Value("${tesseract.datapath:/usr/share/tesseract-ocr/4.00/tessdata}")
+    private String tessdataPath;
+
+    @Value("${ocr.dpi:150}")
+    private int dpi;
+
+    // По умолчанию столько же, сколько потоков фонового распознавания загрузок
+    @Value("${ocr.native-engine.pool-size:${upload.ocr-threads:2}}")
+    private int poolSize;
+
+    @Value("${ocr.native-engine.acquire-timeout-seconds:120}")
+    private long acquireTimeoutSeconds;
+
+    // Свободные хэндлы; создаются лениво, всего не больше poolSize
+    private BlockingQueue<Worker> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean closed;
+
+    @PostConstruct
+    void init() {
+        idle = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public String recognize(BufferedImage image) throws TesseractException {
+        Worker worker = acquire();
+        try {
+            return recognize(worker, image);
+        } finally {
+            idle.offer(worker);
+        }
+    }
+
+    private String recognize(Worker worker, BufferedImage image) throws TesseractException {
+        BufferedImage source = image;
+        int bytesPerPixel;
+        if (isPlainGray(image)) {
+            bytesPerPixel = 1;
+        } else if (isPlainBinary(image)) {
+            // Для 1-битных изображений Tesseract ожидает bytes_per_pixel = 0
+            bytesPerPixel = 0;
+        } else {
+            source = worker.toGray(image);
+            bytesPerPixel = 1;
+        }
+
+        byte[] data = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+        int bytesPerLine = scanlineStride(source);
+        ByteBuffer buffer = worker.buffer(data.length);
+        buffer.put(data, 0, data.length).flip();
+
+        TessAPI1.TessBaseAPISetImage(worker.handle, buffer, source.getWidth(), source.getHeight(), bytesPerPixel, bytesPerLine);
+        TessAPI1.TessBaseAPISetSourceResolution(worker.handle, dpi);
+
+        Pointer text = TessAPI1.TessBaseAPIGetUTF8Text(worker.handle);
+        try {
+            if (text == null) {
+                throw new TesseractException("Tesseract returned no text");
+            }
+            return text.getString(0, StandardCharsets.UTF_8.name());
+        } finally {
+            if (text != null) {
+                TessAPI1.TessDeleteText(text);
+            }
+            TessAPI1.TessBaseAPIClear(worker.handle);
+        }
+    }
+
+    private Worker acquire() throws TesseractException {
+        if (closed) {
+            throw new TesseractException("Tesseract engine is shut down");
+        }
+        Worker worker = idle.poll();
+        if (worker != null) {
+            return worker;
+        }
+        if (created.incrementAndGet() <= poolSize) {
+            try {
+                return createWorker();
+            } catch (TesseractException | RuntimeException e) {
+                created.decrementAndGet();
+                throw e;
+            }
+        }
+        created.decrementAndGet();
+        try {
+            worker = idle.poll(acquireTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while waiting for a Tesseract handle");
+        }
+        if (worker == null) {
+            throw new TesseractException("No free Tesseract handle within " + acquireTimeoutSeconds + " s");
+        }
+        return worker;
+    }
+
+    private Worker createWorker() throws TesseractException {
+        ITessAPI.TessBaseAPI handle = TessAPI1.TessBaseAPICreate();
+        // OEM_LSTM_ONLY - используем только LSTM
+        int status = TessAPI1.TessBaseAPIInit2(handle, tessdataPath, LANGUAGE, ITessAPI.TessOcrEngineMode.OEM_LSTM_ONLY);
+        if (status != 0) {
+            TessAPI1.TessBaseAPIDelete(handle);
+            throw new TesseractException("Could not initialize Tesseract with datapath " + tessdataPath);
+        }
+        // PSM_SINGLE_BLOCK - для сплошного текста
+        TessAPI1.TessBaseAPISetPageSegMode(handle, ITessAPI.TessPageSegMode.PSM_SINGLE_BLOCK);
+        TessAPI1.TessBaseAPISetVariable(handle, "OMP_THREAD_LIMIT", "1");
+
+        log.info("Initialized TessBaseAPI {} of {}", created.get(), poolSize);
+        return new Worker(handle);
+    }
+
+    private static boolean isPlainGray(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_BYTE_GRAY && isUnshared(image);
+    }
+
+    // Стандартная палитра TYPE_BYTE_BINARY: 0 - чёрный, 1 - белый, как и ожидает Tesseract
+    private static boolean isPlainBinary(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_BINARY || !isUnshared(image)
+                || !(image.getColorModel() instanceof IndexColorModel palette) || palette.getMapSize() != 2) {
+            return false;
+        }
+        return (palette.getRGB(0) & 0xFFFFFF) == 0 && (palette.getRGB(1) & 0xFFFFFF) == 0xFFFFFF
+                && image.getSampleModel() instanceof MultiPixelPackedSampleModel packed && packed.getPixelBitStride() == 1;
+    }
+
+    // Растр не является окном в чужой буфер (getSubimage), иначе смещения не совпадут
+    private static boolean isUnshared(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        return raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer() instanceof DataBufferByte buffer && buffer.getOffset() == 0;
+    }
+
+    private static int scanlineStride(BufferedImage image) {
+        SampleModel sampleModel = image.getSampleModel();
+        if (sampleModel instanceof MultiPixelPackedSampleModel packed) {
+            return packed.getScanlineStride();
+        }
+        return ((ComponentSampleModel) sampleModel).getScanlineStride();
+    }
+
+    // Хэндл освобождается только после возврата в пул: занятые дожидаемся, а не удаляем из-под распознавания
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        closed = true;
+        for (int remaining = created.get(); remaining > 0; remaining--) {
+            Worker worker = idle.poll(acquireTimeoutSeconds, TimeUnit.SECONDS);
+            if (worker == null) {
+                log.warn("{} Tesseract handles still busy at shutdown, leaving them to the process exit", remaining);
+                return;
+            }
+            TessAPI1.TessBaseAPIEnd(worker.handle);
+            TessAPI1.TessBaseAPIDelete(worker.handle);
+        }
+    }
+
+    private static final class Worker {
+        private final ITessAPI.TessBaseAPI handle;
+        private ByteBuffer buffer;
+        private BufferedImage grayCanvas;
+
+        private Worker(ITessAPI.TessBaseAPI handle) {
+            this.handle = handle;
+        }
+
+        private ByteBuffer buffer(int capacity) {
+            if (buffer == null || buffer.capacity() < capacity) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        // Цветные изображения переводим в оттенки серого в переиспользуемый холст того же размера
+        private BufferedImage toGray(BufferedImage image) {
+            if (grayCanvas == null || grayCanvas.getWidth() != image.getWidth() || grayCanvas.getHeight() != image.getHeight()) {
+                grayCanvas = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+            }
+            Graphics2D g = grayCanvas.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            return grayCanvas;
+        }
+    }
+}
@@ -49,4 +49,9 @@ public class UserService{
     public Optional<User> findUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
+
+    // Ленивая ссылка для user_id в INSERT'ах: SELECT по users не выполняется, пока не тронуты поля кроме id
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.miaai.language_helper.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.miaai.language_helper.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Короткоживущий кэш флага enabled по id пользователя для JwtAuthFilter.
+ * Отключённый или удалённый пользователь теряет доступ не позже чем через TTL, даже с неистёкшим токеном;
+ * в остальное время аутентификация запроса не ходит в БД.
+ * Немедленного отзыва нет: enabled меняется напрямую в БД, и каждый экземпляр увидит это только по истечении
+ * jwt.user-status.ttl-seconds.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserStatusCache {
+
+    private final UserRepository userRepository;
+
+    @Value("${jwt.user-status.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${jwt.user-status.max-size:100000}")
+    private long maxSize;
+
+    private LoadingCache<Long, Boolean> enabledById;
+
+    @PostConstruct
+    void init() {
+        enabledById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build(id -> userRepository.findEnabledById(id).orElse(false));
+    }
+
+    public boolean isActive(Long userId) {
+        return Boolean.TRUE.equals(enabledById.get(userId));
+    }
+}
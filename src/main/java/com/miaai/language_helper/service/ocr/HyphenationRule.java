@@ -0,0 +1,21 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Склеивает слова, разорванные переносом в конце строки: "exer-\ncise" -> "exercise".
+ */
+@Component
+@Order(30)
+public class HyphenationRule implements OcrNormalizationRule {
+
+    private static final Pattern LINE_BREAK_HYPHEN = Pattern.compile("(\\p{L})[-­]\\s*\\n\\s*(\\p{Ll})");
+
+    @Override
+    public String apply(String text) {
+        return LINE_BREAK_HYPHEN.matcher(text).replaceAll("$1$2");
+    }
+}
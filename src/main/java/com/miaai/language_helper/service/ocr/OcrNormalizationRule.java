@@ -0,0 +1,14 @@
+package com.miaai.language_helper.service.ocr;
+
+/**
+ * Одно детерминированное правило очистки OCR-текста.
+ * Правила собираются в цепочку {@link OcrTextNormalizer} в порядке {@link org.springframework.core.annotation.Order}.
+ */
+public interface OcrNormalizationRule {
+
+    String apply(String text);
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
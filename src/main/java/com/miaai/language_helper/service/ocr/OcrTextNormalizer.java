@@ -0,0 +1,37 @@
+package com.miaai.language_helper.service.ocr;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Локальная нормализация распознанного текста перед отправкой в LLM.
+ * Убирает механические артефакты (переносы, колонтитулы, разделители страниц, мусорные символы, пробелы),
+ * чтобы промпт был короче, а модели оставалась только смысловая очистка.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OcrTextNormalizer {
+
+    // Spring внедряет правила уже отсортированными по @Order
+    private final List<OcrNormalizationRule> rules;
+
+    public String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        long start = System.nanoTime();
+        String result = text;
+        for (OcrNormalizationRule rule : rules) {
+            result = rule.apply(result);
+        }
+
+        log.debug("OCR text normalized: {} -> {} chars in {} µs",
+                text.length(), result.length(), (System.nanoTime() - start) / 1000);
+        return result;
+    }
+}
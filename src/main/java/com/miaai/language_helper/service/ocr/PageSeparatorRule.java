@@ -0,0 +1,23 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Убирает служебные разделители "--- Page N ---" и маркеры ошибок, которые добавляет PdfOcrService.
+ */
+@Component
+@Order(20)
+public class PageSeparatorRule implements OcrNormalizationRule {
+
+    static final Pattern PAGE_SEPARATOR = Pattern.compile("\\n*-{3} Page \\d+ -{3}\\n*");
+    private static final Pattern PAGE_ERROR = Pattern.compile("\\[Error processing page \\d+]");
+
+    @Override
+    public String apply(String text) {
+        String withoutErrors = PAGE_ERROR.matcher(text).replaceAll("");
+        return PAGE_SEPARATOR.matcher(withoutErrors).replaceAll("\n\n");
+    }
+}
@@ -0,0 +1,94 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Удаляет колонтитулы: первые и последние строки, повторяющиеся на нескольких страницах.
+ * Номера страниц внутри колонтитула не мешают сравнению. Должно выполняться до удаления разделителей страниц.
+ * Страницы не длиннее 2 * EDGE_LINES непустых строк не учитываются: у них нет текста между колонтитулами.
+ */
+@Component
+@Order(10)
+public class RepeatedHeaderFooterRule implements OcrNormalizationRule {
+
+    private static final int EDGE_LINES = 2;
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    @Override
+    public String apply(String text) {
+        String[] pages = PageSeparatorRule.PAGE_SEPARATOR.split(text, -1);
+        if (pages.length < 3) {
+            // Меньше двух полноценных страниц (последний кусок после разделителя пустой) - сравнивать не с чем
+            return text;
+        }
+
+        Map<String, Integer> occurrences = new HashMap<>();
+        List<List<String>> pageLines = new ArrayList<>(pages.length);
+        int comparedPages = 0;
+        for (String page : pages) {
+            List<String> lines = new ArrayList<>(Arrays.asList(page.split("\n", -1)));
+            pageLines.add(lines);
+            List<Integer> edgeIndexes = edgeIndexes(lines);
+            if (edgeIndexes.isEmpty()) {
+                continue;
+            }
+            comparedPages++;
+            Set<String> edges = new HashSet<>();
+            for (int index : edgeIndexes) {
+                edges.add(key(lines.get(index)));
+            }
+            edges.forEach(edge -> occurrences.merge(edge, 1, Integer::sum));
+        }
+
+        int threshold = Math.max(2, (comparedPages + 1) / 2);
+        Set<String> repeated = new HashSet<>();
+        occurrences.forEach((line, count) -> {
+            if (count >= threshold && !line.isEmpty()) {
+                repeated.add(line);
+            }
+        });
+        if (repeated.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        var separators = PageSeparatorRule.PAGE_SEPARATOR.matcher(text);
+        for (List<String> lines : pageLines) {
+            // По индексам: такая же строка в середине страницы остаётся на месте
+            for (int index : edgeIndexes(lines)) {
+                if (repeated.contains(key(lines.get(index)))) {
+                    lines.set(index, "");
+                }
+            }
+            result.append(String.join("\n", lines));
+            if (separators.find()) {
+                result.append(separators.group());
+            }
+        }
+        return result.toString();
+    }
+
+    // Индексы первых и последних EDGE_LINES непустых строк; пусто для слишком коротких страниц
+    private static List<Integer> edgeIndexes(List<String> lines) {
+        List<Integer> nonEmpty = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!lines.get(i).isBlank()) {
+                nonEmpty.add(i);
+            }
+        }
+        if (nonEmpty.size() <= EDGE_LINES * 2) {
+            return List.of();
+        }
+        List<Integer> edges = new ArrayList<>(nonEmpty.subList(0, EDGE_LINES));
+        edges.addAll(nonEmpty.subList(nonEmpty.size() - EDGE_LINES, nonEmpty.size()));
+        return edges;
+    }
+
+    private static String key(String line) {
+        return DIGITS.matcher(line.trim().toLowerCase(Locale.ROOT)).replaceAll("#");
+    }
+}
@@ -0,0 +1,36 @@
+package com.miaai.language_helper.service.ocr;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Исправляет опечатки распознавания в латинских словах через {@link SpellingCorrector}.
+ */
+@Component
+@Order(50)
+@RequiredArgsConstructor
+public class SpellingCorrectionRule implements OcrNormalizationRule {
+
+    // Латинское слово, в котором OCR мог спутать буквы с цифрами 0/1/5; хотя бы одна буква, чтобы не трогать числа
+    private static final Pattern WORD = Pattern.compile("(?<![\\p{L}\\p{N}])(?=[015]*[A-Za-z])[A-Za-z015]{3,}(?![\\p{L}\\p{N}])");
+
+    private final SpellingCorrector spellingCorrector;
+
+    @Override
+    public String apply(String text) {
+        if (!spellingCorrector.isEnabled()) {
+            return text;
+        }
+        Matcher matcher = WORD.matcher(text);
+        StringBuilder result = new StringBuilder(text.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(result, Matcher.quoteReplacement(spellingCorrector.correct(matcher.group())));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+}
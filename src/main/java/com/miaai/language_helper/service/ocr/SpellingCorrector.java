@@ -0,0 +1,188 @@
+package com.miaai.language_helper.service.ocr;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Словарный корректор в стиле SymSpell: для каждого слова словаря заранее строится индекс удалений,
+ * поэтому поиск кандидатов на расстоянии 1 - это несколько обращений к HashMap, без перебора словаря.
+ *
+ * Словарь - файл "слово частота" (формат частотных словарей SymSpell) или просто слова по одному в строке
+ * от частых к редким: тогда вес слова - его место в списке. Строки с # - комментарии.
+ * Пока словарь маленький, исправляются только слова с цифрами внутри (wh1ch -> which):
+ * на неполном словаре исправление обычных слов портило бы редкие, но правильные слова.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpellingCorrector {
+
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${ocr.spelling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ocr.spelling.dictionary:classpath:ocr/frequency_dictionary_en.txt}")
+    private String dictionaryLocation;
+
+    // С какого размера словарь считаем полным и исправляем любые незнакомые слова
+    @Value("${ocr.spelling.full-correction-min-words:20000}")
+    private int fullCorrectionMinWords;
+
+    private final Map<String, Long> words = new HashMap<>();
+    private final Map<String, List<String>> deletes = new HashMap<>();
+    private boolean fullCorrection;
+
+    @PostConstruct
+    void loadDictionary() {
+        if (!enabled) {
+            return;
+        }
+        Resource resource = resourceLoader.getResource(dictionaryLocation);
+        if (!resource.exists()) {
+            log.warn("Spelling dictionary not found at {}, spelling correction disabled", dictionaryLocation);
+            enabled = false;
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            long rank = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 0 || parts[0].isEmpty() || parts[0].startsWith("#")) {
+                    continue;
+                }
+                // Без частоты: чем выше в списке, тем больше вес
+                long count = parts.length > 1 ? Long.parseLong(parts[1]) : Long.MAX_VALUE - rank;
+                rank++;
+                addWord(parts[0].toLowerCase(Locale.ROOT), count);
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.error("Error loading spelling dictionary {}: {}", dictionaryLocation, e.getMessage());
+            enabled = false;
+            return;
+        }
+
+        fullCorrection = words.size() >= fullCorrectionMinWords;
+        log.info("Spelling dictionary loaded: {} words, {} delete keys, full correction: {}",
+                words.size(), deletes.size(), fullCorrection);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Возвращает исправленное слово или исходное, если исправлять нечего или кандидат не однозначен.
+     */
+    public String correct(String token) {
+        if (!enabled || token.length() < MIN_WORD_LENGTH || isAllUpperCase(token)) {
+            return token;
+        }
+
+        boolean hasDigits = token.chars().anyMatch(Character::isDigit);
+        if (!hasDigits && !fullCorrection) {
+            return token;
+        }
+
+        String lower = token.toLowerCase(Locale.ROOT);
+        if (words.containsKey(lower)) {
+            return token;
+        }
+
+        String best = null;
+        long bestCount = 0;
+        boolean ambiguous = false;
+        for (String candidate : candidates(lower)) {
+            long count = words.get(candidate);
+            if (count > bestCount) {
+                best = candidate;
+                bestCount = count;
+                ambiguous = false;
+            } else if (count == bestCount && !candidate.equals(best)) {
+                ambiguous = true;
+            }
+        }
+
+        if (best == null || ambiguous) {
+            return token;
+        }
+        return Character.isUpperCase(token.charAt(0))
+                ? Character.toUpperCase(best.charAt(0)) + best.substring(1)
+                : best;
+    }
+
+    // Кандидаты на расстоянии Дамерау-Левенштейна 1: удаление, вставка, замена или перестановка символа
+    private Set<String> candidates(String word) {
+        Set<String> result = new HashSet<>();
+        // Вставка лишнего символа: слово словаря получается удалением из входного слова
+        for (String delete : singleDeletes(word)) {
+            if (words.containsKey(delete)) {
+                result.add(delete);
+            }
+            // Замена или перестановка: у обоих слов совпадает один из вариантов удаления
+            for (String candidate : deletes.getOrDefault(delete, List.of())) {
+                if (candidate.length() == word.length() && distanceIsOne(word, candidate)) {
+                    result.add(candidate);
+                }
+            }
+        }
+        // Пропущенный символ: входное слово - одно из удалений слова словаря
+        result.addAll(deletes.getOrDefault(word, List.of()));
+        return result;
+    }
+
+    private void addWord(String word, long count) {
+        if (words.putIfAbsent(word, count) != null) {
+            return;
+        }
+        for (String delete : singleDeletes(word)) {
+            deletes.computeIfAbsent(delete, key -> new ArrayList<>(2)).add(word);
+        }
+    }
+
+    private static Set<String> singleDeletes(String word) {
+        Set<String> result = new HashSet<>(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            result.add(word.substring(0, i) + word.substring(i + 1));
+        }
+        return result;
+    }
+
+    // Слова одинаковой длины: отличаются одним символом или перестановкой соседних
+    private static boolean distanceIsOne(String a, String b) {
+        int first = -1;
+        int diffs = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                if (first < 0) {
+                    first = i;
+                }
+                diffs++;
+            }
+        }
+        if (diffs == 1) {
+            return true;
+        }
+        return diffs == 2 && first + 1 < a.length()
+                && a.charAt(first) == b.charAt(first + 1) && a.charAt(first + 1) == b.charAt(first);
+    }
+
+    private static boolean isAllUpperCase(String token) {
+        return token.chars().filter(Character::isLetter).allMatch(Character::isUpperCase);
+    }
+}
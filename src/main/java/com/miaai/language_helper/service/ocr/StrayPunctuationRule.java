@@ -0,0 +1,26 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Убирает мусорные символы распознавания: строки из одних знаков, одиночные "|", "~", "^"
+ * и задвоенные знаки препинания. Пропуски ("_____", "....") не трогаем - по ним определяется тип упражнения.
+ */
+@Component
+@Order(40)
+public class StrayPunctuationRule implements OcrNormalizationRule {
+
+    private static final Pattern NOISE_LINE = Pattern.compile("(?m)^[^\\p{L}\\p{N}_.\\n]*$");
+    private static final Pattern NOISE_SYMBOLS = Pattern.compile("(?<=\\s|^)[|¦~^`•]+(?=\\s|$)", Pattern.MULTILINE);
+    private static final Pattern REPEATED_PUNCTUATION = Pattern.compile("([,;:!?])\\1+");
+
+    @Override
+    public String apply(String text) {
+        String result = NOISE_LINE.matcher(text).replaceAll("");
+        result = NOISE_SYMBOLS.matcher(result).replaceAll("");
+        return REPEATED_PUNCTUATION.matcher(result).replaceAll("$1");
+    }
+}
@@ -0,0 +1,25 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Схлопывает пробелы и пустые строки. Выполняется последним, после всех удалений.
+ */
+@Component
+@Order(100)
+public class WhitespaceRule implements OcrNormalizationRule {
+
+    private static final Pattern HORIZONTAL_SPACE = Pattern.compile("[\\t\\x0B\\f\\u00A0\\u2007\\u202F ]+");
+    private static final Pattern TRAILING_SPACE = Pattern.compile("(?m) +$|^ +");
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n{3,}");
+
+    @Override
+    public String apply(String text) {
+        String result = HORIZONTAL_SPACE.matcher(text.replace("\r\n", "\n")).replaceAll(" ");
+        result = TRAILING_SPACE.matcher(result).replaceAll("");
+        return BLANK_LINES.matcher(result).replaceAll("\n\n").trim();
+    }
+}
@@ -0,0 +1,32 @@
+package com.miaai.language_helper.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.miaai.language_helper.dto.ExerciseDto;
+
+/**
+ * Общие (потокобезопасные) ObjectReader/ObjectWriter для JSON упражнений в колонке exercise_data,
+ * чтобы не пересоздавать их на каждую строку.
+ */
+public final class ExerciseJsonCodec {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectReader reader = objectMapper.readerFor(ExerciseDto.class);
+    private static final ObjectWriter writer = objectMapper.writerFor(ExerciseDto.class);
+
+    private ExerciseJsonCodec() {
+    }
+
+    /**
+     * Полиморфное чтение: Jackson выбирает подкласс по полю "type" за один разбор.
+     */
+    public static ExerciseDto read(String json) throws JsonProcessingException {
+        return reader.readValue(json);
+    }
+
+    public static String write(ExerciseDto exercise) throws JsonProcessingException {
+        return writer.writeValueAsString(exercise);
+    }
+}
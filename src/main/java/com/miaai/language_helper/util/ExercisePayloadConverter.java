@@ -0,0 +1,33 @@
+package com.miaai.language_helper.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.miaai.language_helper.model.ExercisePayload;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Конвертер exercise_data без разбора JSON при загрузке: строка из БД оборачивается в ленивый {@link ExercisePayload}.
+ */
+@Slf4j
+@Converter
+public class ExercisePayloadConverter implements AttributeConverter<ExercisePayload, String> {
+
+    @Override
+    public String convertToDatabaseColumn(ExercisePayload attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        try {
+            return attribute.toJson();
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize ExerciseDto to JSON", e);
+            throw new RuntimeException("Error converting ExerciseDto to JSON", e);
+        }
+    }
+
+    @Override
+    public ExercisePayload convertToEntityAttribute(String dbData) {
+        return dbData != null ? ExercisePayload.fromJson(dbData) : null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.miaai.language_helper.util;
+
+import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.dto.ExerciseSaveRequest;
+import com.miaai.language_helper.dto.generation.GenerationExerciseDto;
+import com.miaai.language_helper.dto.generation.TrueFalseGenerationDto;
+import com.miaai.language_helper.dto.ocr.FillTheGapsResponseDto;
+import com.miaai.language_helper.dto.ocr.MatchTheSentenceResponseDto;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Преобразование запроса сохранения (ExerciseSaveRequest) в ExerciseDto нужного типа.
+ * Используется и при сохранении одного упражнения, и при пакетном импорте.
+ */
+@Component
+public class ExerciseSaveRequestConverter {
+
+    // Метод toExerciseDto нужно обновить для поддержки новых типов упражнений
+    public ExerciseDto toExerciseDto(ExerciseSaveRequest request) {
+        switch (request.getType()) {
+            case "True/False":
+                TrueFalseGenerationDto trueFalseDto = TrueFalseGenerationDto.builder()
+                        .type("True/False")
+                        .createdText(request.getCreatedText())
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertCreationDictionary(request.getDictionary()))
+                        .metadata(request.getMetadata())
+                        .build();
+                return trueFalseDto;
+
+            case "Fill The Gaps":
+                return FillTheGapsResponseDto.builder()
+                        .type("Fill The Gaps")
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertFillTheGapsDictionary(request.getDictionary()))
+                        .createdText(request.getCreatedText())
+                        .metadata(request.getMetadata())
+                        .build();
+
+            case "Match The Sentence":
+                return MatchTheSentenceResponseDto.builder()
+                        .type("Match The Sentence")
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertMatchTheSentenceDictionary(request.getDictionary()))
+                        .createdText(request.getCreatedText())
+                        .metadata(request.getMetadata())
+                        .build();
+
+            case "ABCD":
+                // Создаем DTO для ABCD упражнений
+                return TrueFalseGenerationDto.builder()
+                        .type("ABCD")
+                        .createdText(request.getCreatedText())
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertCreationDictionary(request.getDictionary()))
+                        .metadata(request.getMetadata())
+                        .build();
+
+            case "Open Questions":
+                // Создаем DTO для Open Questions упражнений
+                return TrueFalseGenerationDto.builder()
+                        .type("Open Questions")
+                        .createdText(request.getCreatedText())
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertCreationDictionary(request.getDictionary()))
+                        .metadata(request.getMetadata())
+                        .build();
+
+            case "Dialogue":
+                // Создаем DTO для Dialogue упражнений
+                return TrueFalseGenerationDto.builder()
+                        .type("Dialogue")
+                        .createdText(request.getCreatedText())
+                        .questions(request.getQuestions())
+                        .answers(request.getAnswers())
+                        .dictionary(convertCreationDictionary(request.getDictionary()))
+                        .metadata(request.getMetadata())
+                        .build();
+
+            default:
+                throw new IllegalArgumentException("Unknown exercise type: " + request.getType());
+        }
+    }
+
+    private List<GenerationExerciseDto.DictionaryEntry> convertCreationDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
+        if (dictionary == null) return Collections.emptyList();
+        return dictionary.stream().map(entry -> {
+            GenerationExerciseDto.DictionaryEntry dictEntry = new GenerationExerciseDto.DictionaryEntry();
+            dictEntry.setQuestion(entry.getQuestionIndex() != null ? entry.getQuestionIndex().toString() : entry.getQuestion());
+            dictEntry.setAnswer(entry.getAnswerIndex() != null ? entry.getAnswerIndex().toString() : entry.getAnswer());
+            return dictEntry;
+        }).collect(Collectors.toList());
+    }
+
+    private List<FillTheGapsResponseDto.DictionaryEntry> convertFillTheGapsDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
+        if (dictionary == null) return Collections.emptyList();
+        return dictionary.stream().map(entry -> {
+            FillTheGapsResponseDto.DictionaryEntry dictEntry = new FillTheGapsResponseDto.DictionaryEntry();
+            if (entry.getQuestionIndex() != null) {
+                dictEntry.setQuestion(entry.getQuestionIndex());
+            } else if (entry.getQuestion() != null) {
+                dictEntry.setQuestion(Integer.parseInt(entry.getQuestion()));
+            }
+            if (entry.getAnswerIndex() != null) {
+                dictEntry.setAnswer(entry.getAnswerIndex());
+            } else if (entry.getAnswer() != null) {
+                dictEntry.setAnswer(Integer.parseInt(entry.getAnswer()));
+            }
+            return dictEntry;
+        }).collect(Collectors.toList());
+    }
+
+    private List<MatchTheSentenceResponseDto.DictionaryEntry> convertMatchTheSentenceDictionary(List<ExerciseSaveRequest.DictionaryEntry> dictionary) {
+        if (dictionary == null) return Collections.emptyList();
+        return dictionary.stream().map(entry -> {
+            MatchTheSentenceResponseDto.DictionaryEntry dictEntry = new MatchTheSentenceResponseDto.DictionaryEntry();
+            if (entry.getQuestionIndex() != null) {
+                dictEntry.setQuestion(entry.getQuestionIndex());
+            } else if (entry.getQuestion() != null) {
+                dictEntry.setQuestion(Integer.parseInt(entry.getQuestion()));
+            }
+            if (entry.getAnswerIndex() != null) {
+                dictEntry.setAnswer(entry.getAnswerIndex());
+            } else if (entry.getAnswer() != null) {
+                dictEntry.setAnswer(Integer.parseInt(entry.getAnswer()));
+            }
+            return dictEntry;
+        }).collect(Collectors.toList());
+    }
+}
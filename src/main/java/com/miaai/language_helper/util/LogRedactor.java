@@ -0,0 +1,66 @@
+package com.miaai.language_helper.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Маскирование секретов и персональных данных перед записью в лог, плюс обрезка длинных тел.
+ * Всё, что попадает в лог из запросов, промптов и ответов LLM, проходит через {@link #forLog(String, int)}.
+ */
+public final class LogRedactor {
+
+    private static final String MASK = "***";
+
+    // "password": "...", "token": "..." и т.п. в JSON
+    private static final Pattern SECRET_JSON_FIELD = Pattern.compile(
+            "(\"(?:password|token|apiKey|api_key|authorization|secret|accessToken|refreshToken)\"\\s*:\\s*)\"[^\"]*\"",
+            Pattern.CASE_INSENSITIVE);
+    // password=...&token=... в query string и form-данных
+    private static final Pattern SECRET_PARAM = Pattern.compile(
+            "((?:password|token|api_key|apiKey|secret)=)[^&\\s]*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BEARER = Pattern.compile("(Bearer\\s+)[A-Za-z0-9._~+/=-]+");
+    private static final Pattern JWT = Pattern.compile("eyJ[A-Za-z0-9_-]+\\.[A-Za-z0-9_-]+\\.[A-Za-z0-9_-]+");
+    private static final Pattern OPENAI_KEY = Pattern.compile("sk-[A-Za-z0-9_-]{10,}");
+    // Email: остаётся первая буква и домен
+    private static final Pattern EMAIL = Pattern.compile("([A-Za-z0-9])[A-Za-z0-9._%+-]*(@[A-Za-z0-9.-]+\\.[A-Za-z]{2,})");
+
+    // Сколько символов сверх лимита маскируется до обрезки, чтобы секрет не попал в лог обрезанным наполовину
+    private static final int REDACT_LOOKAHEAD = 512;
+
+    private LogRedactor() {
+    }
+
+    public static String redact(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        String result = SECRET_JSON_FIELD.matcher(text).replaceAll("$1\"" + MASK + "\"");
+        result = SECRET_PARAM.matcher(result).replaceAll("$1" + MASK);
+        result = BEARER.matcher(result).replaceAll("$1" + MASK);
+        result = JWT.matcher(result).replaceAll(MASK);
+        result = OPENAI_KEY.matcher(result).replaceAll("sk-" + MASK);
+        return EMAIL.matcher(result).replaceAll("$1" + MASK + "$2");
+    }
+
+    public static String truncate(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, maxChars) + "...(+" + (text.length() - maxChars) + " chars)";
+    }
+
+    /**
+     * Маскирует и обрезает до maxChars. Маскируется только начало текста, которое может попасть в лог.
+     */
+    public static String forLog(String text, int maxChars) {
+        if (text == null) {
+            return null;
+        }
+        int total = text.length();
+        String head = total > maxChars + REDACT_LOOKAHEAD ? text.substring(0, maxChars + REDACT_LOOKAHEAD) : text;
+        String redacted = redact(head);
+        if (redacted.length() <= maxChars && head.length() == total) {
+            return redacted;
+        }
+        return redacted.substring(0, Math.min(maxChars, redacted.length())) + "...(" + total + " chars)";
+    }
+}
@@ -0,0 +1,46 @@
+package com.miaai.language_helper.util;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Выполнение участка кода внутри span OpenTelemetry: span становится текущим (вложенные span - его дети),
+ * исключение записывается в span со статусом ERROR и пробрасывается дальше.
+ */
+public final class Spans {
+
+    private Spans() {
+    }
+
+    @FunctionalInterface
+    public interface SpanCallable<T, E extends Exception> {
+        T call(Span span) throws E;
+    }
+
+    @FunctionalInterface
+    public interface SpanRunnable<E extends Exception> {
+        void run(Span span) throws E;
+    }
+
+    public static <T, E extends Exception> T inSpan(Tracer tracer, String name, SpanCallable<T, E> callable) throws E {
+        Span span = tracer.spanBuilder(name).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return callable.call(span);
+        } catch (Exception | Error e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    public static <E extends Exception> void runInSpan(Tracer tracer, String name, SpanRunnable<E> runnable) throws E {
+        inSpan(tracer, name, span -> {
+            runnable.run(span);
+            return null;
+        });
+    }
+}
@@ -43,3 +43,37 @@ CREATE INDEX IF NOT EXISTS idx_exercises_metadata ON exercises USING GIN(metadat
 -- Индекс для полнотекстового поиска по created_text (опционально)
 CREATE INDEX IF NOT EXISTS idx_exercises_created_text ON exercises USING gin(to_tsvector('english', created_text));
 
+-- Превью для списка истории считается при сохранении, а не при каждом чтении
+ALTER TABLE exercises ADD COLUMN IF NOT EXISTS content_preview VARCHAR(110);
+UPDATE exercises
+SET content_preview = COALESCE(
+        CASE
+            WHEN src.text IS NULL OR length(src.text) <= 100 THEN src.text
+            ELSE left(src.text, 100) || '...'
+        END, '')
+FROM (SELECT id,
+             COALESCE(created_text,
+                      '[' || array_to_string(ARRAY(SELECT jsonb_array_elements_text(
+                              CASE WHEN jsonb_typeof(exercise_data -> 'questions') = 'array'
+                                   THEN exercise_data -> 'questions' ELSE '[]'::jsonb END)), ', ') || ']') AS text
+      FROM exercises
+      WHERE content_preview IS NULL) src
+WHERE exercises.id = src.id;
+
+-- Keyset-пагинация истории пользователя по (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_exercises_user_created ON exercises(user_id, created_at DESC, id DESC);
+
+-- id выдаются Hibernate пулами по 50 (allocationSize в ExerciseTableRecord), шаг последовательности должен совпадать
+ALTER SEQUENCE exercises_id_seq INCREMENT BY 50;
+
+-- Проверка ETag публичного упражнения читает только updated_at из индекса
+CREATE INDEX IF NOT EXISTS idx_exercises_public_uuid_updated ON exercises(uuid) INCLUDE (updated_at) WHERE is_public = true;
+
+-- Дневной расход LLM-эндпоинтов по пользователю и классу (RateLimiter пишет пакетами, не на каждом запросе)
+CREATE TABLE IF NOT EXISTS api_usage_daily (
+                                               user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+                                               endpoint_class VARCHAR(20) NOT NULL,
+                                               day DATE NOT NULL,
+                                               used INTEGER NOT NULL DEFAULT 0,
+                                               PRIMARY KEY (user_id, endpoint_class, day)
+);
@@ -0,0 +1,106 @@
+package com.miaai.language_helper.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.miaai.language_helper.dto.ExerciseDto;
+import com.miaai.language_helper.dto.ExerciseSummaryDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * exercise_data в ответе /api/history/getTask: прежний путь (ExerciseDtoConverter - readTree и readValue в DTO,
+ * затем writeValueAsString в контроллере) против JSONB-текста из проекции как есть.
+ * В обоих случаях замеряется и запись итогового ExerciseSummaryDto, как её делает Spring MVC.
+ * <p>
+ * Запуск: main() из IDE или
+ * {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test}, затем
+ * {@code java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main ExerciseDataBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExerciseDataBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private String exerciseData;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        exerciseData = objectMapper.writeValueAsString(typicalExercise());
+    }
+
+    @Benchmark
+    public String parseAndReserialize() throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(exerciseData);
+        node.path("type").asText("Unknown");
+        ExerciseDto exercise = objectMapper.readValue(exerciseData, ExerciseDto.class);
+        return objectMapper.writeValueAsString(summary(objectMapper.writeValueAsString(exercise)));
+    }
+
+    @Benchmark
+    public String rawJsonb() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(summary(exerciseData));
+    }
+
+    private static ExerciseSummaryDto summary(String exerciseData) {
+        return ExerciseSummaryDto.builder()
+                .uuid("6f1c1a52-2b7e-4f0a-9d55-0c1b8a7e3d21")
+                .type("True/False")
+                .contentPreview("Tom lives in a small town near the sea...")
+                .exerciseData(exerciseData)
+                .questionsCount(8)
+                .build();
+    }
+
+    // Типичное сгенерированное упражнение True/False: текст ~1.5 КБ, 8 вопросов с ответами, словарь из 10 слов
+    private ObjectNode typicalExercise() {
+        ObjectNode exercise = objectMapper.createObjectNode();
+        exercise.put("type", "True/False");
+        exercise.put("createdText", ("Tom lives in a small town near the sea. Every morning he walks his dog "
+                + "along the beach and buys fresh bread at the bakery on the corner. ").repeat(10));
+        ArrayNode questions = exercise.putArray("questions");
+        ArrayNode answers = exercise.putArray("answers");
+        for (int i = 1; i <= 8; i++) {
+            questions.add("Statement " + i + ": Tom walks his dog along the beach every morning.");
+            answers.add(i % 2 == 0 ? "True" : "False");
+        }
+        ArrayNode dictionary = exercise.putArray("dictionary");
+        for (int i = 1; i <= 10; i++) {
+            dictionary.addObject()
+                    .put("question", "bakery " + i)
+                    .put("answer", "пекарня " + i);
+        }
+        exercise.putObject("metadata")
+                .put("level", "B1")
+                .put("age", "adult")
+                .put("language", "English")
+                .put("topic", "daily routine");
+        return exercise;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExerciseDataBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
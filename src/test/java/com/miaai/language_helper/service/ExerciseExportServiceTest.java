@@ -0,0 +1,125 @@
+package com.miaai.language_helper.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository;
+import com.miaai.language_helper.repository.ExerciseJdbcRepository.ExportRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Выгрузка миллиона упражнений под -Xmx64m (отдельный запуск surefire, см. pom.xml): если сервис начнёт
+ * копить строки или записи ZIP в памяти, тест упадёт с OutOfMemoryError.
+ */
+@Tag("bounded-heap")
+class ExerciseExportServiceTest {
+
+    private static final int ROWS = 1_000_000;
+    private static final long MAX_HEAP = 64L * 1024 * 1024;
+    private static final String EMAIL = "export@example.com";
+
+    private ExerciseExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        ExerciseJdbcRepository repository = mock(ExerciseJdbcRepository.class);
+        doAnswer(invocation -> {
+            Consumer<ExportRow> consumer = invocation.getArgument(1);
+            LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+            for (int i = 0; i < ROWS; i++) {
+                // Каждая строка - новые объекты: удержание ссылок на них быстро исчерпает кучу
+                consumer.accept(new ExportRow(
+                        "uuid-" + i,
+                        "TRUE_FALSE",
+                        createdAt.plusSeconds(i),
+                        createdAt.plusSeconds(i),
+                        i % 2 == 0,
+                        false,
+                        "Text number " + i + " used to create the exercise",
+                        "{\"level\":\"B1\",\"n\":" + i + "}",
+                        "{\"questions\":[\"Statement " + i + "\"],\"answers\":[true],\"dictionary\":{}}"));
+            }
+            return null;
+        }).when(repository).forEachForExport(eq(EMAIL), any());
+
+        exportService = new ExerciseExportService(repository, new ObjectMapper());
+        ReflectionTestUtils.setField(exportService, "zipEntrySize", 1000);
+    }
+
+    @Test
+    void runsUnderBoundedHeap() {
+        assertThat(Runtime.getRuntime().maxMemory())
+                .as("тест должен запускаться с -Xmx64m")
+                .isLessThanOrEqualTo(MAX_HEAP);
+    }
+
+    @Test
+    void writesMillionRowsAsNdjson() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+
+        exportService.writeNdjson(EMAIL, out);
+
+        assertThat(out.newlines).isEqualTo(ROWS);
+        assertThat(out.bytes).isGreaterThan(ROWS * 100L);
+    }
+
+    @Test
+    void writesMillionRowsAsZip() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+
+        exportService.writeZip(EMAIL, out);
+
+        // Архив завершён записью конца центрального каталога (22 байта без комментария) на ROWS / 1000 файлов
+        byte[] end = out.tail();
+        assertThat(new byte[]{end[0], end[1], end[2], end[3]}).containsExactly('P', 'K', 5, 6);
+        assertThat((end[10] & 0xff) | (end[11] & 0xff) << 8).isEqualTo(ROWS / 1000);
+        assertThat(out.bytes).isGreaterThan(ROWS);
+    }
+
+    /**
+     * Считает байты и переводы строк, ничего не сохраняя, кроме последних 22 байт.
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private static final int TAIL_SIZE = 22;
+
+        private final byte[] tail = new byte[TAIL_SIZE];
+        private long bytes;
+        private long newlines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                newlines++;
+            }
+            tail[(int) (bytes % TAIL_SIZE)] = (byte) b;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+
+        byte[] tail() {
+            byte[] ordered = new byte[TAIL_SIZE];
+            for (int i = 0; i < TAIL_SIZE; i++) {
+                ordered[i] = tail[(int) ((bytes + i) % TAIL_SIZE)];
+            }
+            return ordered;
+        }
+    }
+}
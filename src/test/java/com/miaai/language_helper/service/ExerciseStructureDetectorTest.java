@@ -0,0 +1,71 @@
+package com.miaai.language_helper.service;
+
+import com.miaai.language_helper.service.ExerciseStructureDetector.Detection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExerciseStructureDetectorTest {
+
+    private static final String EXERCISE_PAGE = """
+            Exercise 1. Fill in the gaps with the correct word.
+            1. I ____ to school every day.
+            2. She ____ a doctor.
+            3. They ______ football on Sundays.
+            """;
+    private static final String CONTINUATION_PAGE = """
+            4. We ____ to the cinema yesterday.
+            5. He ____ his homework every evening.
+            """;
+    private static final String PROSE_PAGE = """
+            The history of the town goes back to the twelfth century,
+            when a small market grew up around the bridge.
+            """;
+    private static final String FAILED_PAGE = "\n[Error processing page 2]\n";
+
+    private ExerciseStructureDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        ExerciseTypeClassifier classifier = new ExerciseTypeClassifier();
+        ReflectionTestUtils.setField(classifier, "minConfidence", 0.6);
+        detector = new ExerciseStructureDetector(classifier);
+    }
+
+    @Test
+    void endsExerciseOnRecognizedPageWithoutItems() {
+        Detection detection = detector.detect(List.of(EXERCISE_PAGE, PROSE_PAGE), Set.of());
+
+        assertThat(detection.complete()).isTrue();
+        assertThat(detection.firstPage()).isZero();
+        assertThat(detection.lastPage()).isZero();
+    }
+
+    @Test
+    void failedPageDoesNotEndExercise() {
+        Detection detection = detector.detect(List.of(EXERCISE_PAGE, FAILED_PAGE), Set.of(1));
+
+        assertThat(detection.complete()).isFalse();
+    }
+
+    @Test
+    void recognizedPageAfterFailedOneEndsExercise() {
+        Detection detection = detector.detect(List.of(EXERCISE_PAGE, FAILED_PAGE, PROSE_PAGE), Set.of(1));
+
+        assertThat(detection.complete()).isTrue();
+        assertThat(detection.lastPage()).isZero();
+    }
+
+    @Test
+    void exerciseContinuesAcrossFailedPage() {
+        Detection detection = detector.detect(List.of(EXERCISE_PAGE, FAILED_PAGE, CONTINUATION_PAGE), Set.of(1));
+
+        assertThat(detection.complete()).isFalse();
+        assertThat(detection.lastPage()).isEqualTo(2);
+    }
+}
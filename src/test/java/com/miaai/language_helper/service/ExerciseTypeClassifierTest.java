@@ -0,0 +1,129 @@
+package com.miaai.language_helper.service;
+
+import com.miaai.language_helper.dto.ExerciseType;
+import com.miaai.language_helper.service.ExerciseTypeClassifier.Classification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExerciseTypeClassifierTest {
+
+    private ExerciseTypeClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        classifier = new ExerciseTypeClassifier();
+        ReflectionTestUtils.setField(classifier, "minConfidence", 0.6);
+    }
+
+    @Test
+    void classifiesFillTheGapsWithUnderscores() {
+        String text = """
+                Fill in the gaps with the correct word.
+                1. I ____ to school every day.
+                2. She ____ a doctor.
+                3. They ______ football on Sundays.
+                """;
+
+        assertConfident(text, ExerciseType.FILLTHEGAP);
+    }
+
+    @Test
+    void classifiesFillTheGapsWithDots() {
+        String text = """
+                Complete the sentences.
+                I ...... to school by bus.
+                We ..... very happy yesterday.
+                """;
+
+        assertConfident(text, ExerciseType.FILLTHEGAP);
+    }
+
+    @Test
+    void classifiesMatchTheSentence() {
+        String text = """
+                Match the words with their definitions.
+                1. apple
+                2. dog
+                3. house
+                a) an animal
+                b) a fruit
+                c) a building
+                """;
+
+        assertConfident(text, ExerciseType.MATCHTHESENTENCE);
+    }
+
+    @Test
+    void classifiesTrueFalseWithOptions() {
+        String text = """
+                Read the text and decide: true or false?
+                1. The cat is black. T / F
+                2. The dog is small. T / F
+                3. The house is big. T / F
+                """;
+
+        assertConfident(text, ExerciseType.TRUEFALSE);
+    }
+
+    @Test
+    void classifiesTrueFalseWithAnswersAtLineEnd() {
+        String text = """
+                Верно или неверно?
+                1. Кот чёрный - верно
+                2. Собака маленькая - неверно
+                """;
+
+        assertConfident(text, ExerciseType.TRUEFALSE);
+    }
+
+    @Test
+    void ignoresProseWithEllipsisDecimalsAndTrueFalseWords() {
+        String text = """
+                It is true that the weather was bad. Nobody thought it was false, though....
+                In 2019 prices rose by 10.5 percent over 2-3 years.
+                12.5 million people visited the city.
+                Wait.... what happened next? Was it true or not, nobody knew.
+                """;
+
+        assertThat(classifier.containsExerciseItems(text)).isFalse();
+        assertThat(classifier.classify(text)).isEqualTo(Classification.UNKNOWN);
+    }
+
+    @Test
+    void ignoresNumberedProseWithoutSecondColumn() {
+        String text = """
+                How to plant a tree:
+                1. Dig a hole.
+                2. Put the tree in it.
+                3. Water it well.
+                """;
+
+        assertThat(classifier.classify(text)).isEqualTo(Classification.UNKNOWN);
+    }
+
+    @Test
+    void ignoresSingleTrueAtLineEnd() {
+        String text = """
+                My friend told me a story about his trip, and I think it was true
+                because he showed me the photos from the mountains.
+                """;
+
+        assertThat(classifier.classify(text)).isEqualTo(Classification.UNKNOWN);
+    }
+
+    @Test
+    void returnsUnknownForBlankText() {
+        assertThat(classifier.classify("   ")).isEqualTo(Classification.UNKNOWN);
+        assertThat(classifier.containsExerciseItems(null)).isFalse();
+    }
+
+    private void assertConfident(String text, ExerciseType expected) {
+        Classification classification = classifier.classify(text);
+        assertThat(classification.type()).isEqualTo(expected);
+        assertThat(classifier.isConfident(classification)).isTrue();
+        assertThat(classifier.containsExerciseItems(text)).isTrue();
+    }
+}
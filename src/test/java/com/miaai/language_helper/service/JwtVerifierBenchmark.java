@@ -0,0 +1,109 @@
+package com.miaai.language_helper.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка JWT на запрос: прежний путь (ключ и парсер на каждый вызов, три разбора токена),
+ * {@link JwtVerifier} с промахом кэша и с попаданием.
+ * <p>
+ * Запуск: main() из IDE или
+ * {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test}, затем
+ * {@code java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main JwtVerifierBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifierBenchmark {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+    // Больше размера кэша: при переборе по кругу почти каждая проверка - промах
+    private static final int MISS_TOKENS = 50_000;
+    private static final long CACHE_SIZE = 10_000;
+
+    private JwtVerifier verifier;
+    private String hotToken;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        verifier = new JwtVerifier(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(verifier, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(verifier, "cacheMaxSize", CACHE_SIZE);
+        verifier.init();
+
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        tokens = new String[MISS_TOKENS];
+        for (int i = 0; i < MISS_TOKENS; i++) {
+            tokens[i] = Jwts.builder()
+                    .subject("user" + i + "@example.com")
+                    .claim(JwtService.CLAIM_USER_ID, (long) i)
+                    .claim(JwtService.CLAIM_ROLES, List.of("ROLE_USER"))
+                    .issuedAt(new Date())
+                    .expiration(expiration)
+                    .signWith(key)
+                    .compact();
+        }
+        hotToken = tokens[0];
+        verifier.verify(hotToken);
+    }
+
+    // Как JwtAuthFilter до JwtVerifier: extractEmail, extractExpiration и проверка - каждый со своим ключом и парсером
+    @Benchmark
+    public Claims rebuildParserPerCall() {
+        Claims claims = null;
+        for (int i = 0; i < 3; i++) {
+            claims = Jwts.parser()
+                    .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                    .build()
+                    .parseSignedClaims(hotToken)
+                    .getPayload();
+        }
+        return claims;
+    }
+
+    @Benchmark
+    public Claims verifyCacheMiss() {
+        String token = tokens[1 + next];
+        next = (next + 1) % (MISS_TOKENS - 1);
+        return verifier.verify(token);
+    }
+
+    @Benchmark
+    public Claims verifyCacheHit() {
+        return verifier.verify(hotToken);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerifierBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
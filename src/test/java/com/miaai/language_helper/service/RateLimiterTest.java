@@ -0,0 +1,83 @@
+package com.miaai.language_helper.service;
+
+import com.miaai.language_helper.service.RateLimiter.EndpointClass;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Constructor;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RateLimiterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        rateLimiter = new RateLimiter(jdbcTemplate);
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "generationBurst", 5);
+        ReflectionTestUtils.setField(rateLimiter, "generationPerMinute", 6);
+        ReflectionTestUtils.setField(rateLimiter, "generationDailyQuota", 200);
+        ReflectionTestUtils.setField(rateLimiter, "ocrBurst", 3);
+        ReflectionTestUtils.setField(rateLimiter, "ocrPerMinute", 2);
+        ReflectionTestUtils.setField(rateLimiter, "ocrDailyQuota", 50);
+        rateLimiter.init();
+    }
+
+    @Test
+    void flushesUsageUnderTheDayItAccrued() throws Exception {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+
+        // Запрос до полуночи
+        setDay(yesterday.toEpochDay(), Long.MAX_VALUE);
+        assertThat(rateLimiter.tryAcquire(1L, EndpointClass.GENERATION).allowed()).isTrue();
+
+        // Первый запрос после полуночи переводит пользователя на новый день до flush
+        setDay(yesterday.toEpochDay(), 0);
+        assertThat(rateLimiter.tryAcquire(1L, EndpointClass.GENERATION).allowed()).isTrue();
+
+        rateLimiter.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertThat(batch.getValue())
+                .extracting(row -> row[2] + "=" + row[3])
+                .containsExactlyInAnyOrder(Date.valueOf(yesterday) + "=1", Date.valueOf(today) + "=1");
+    }
+
+    @Test
+    void quotaStartsFromZeroOnNewDay() throws Exception {
+        ReflectionTestUtils.setField(rateLimiter, "generationDailyQuota", 1);
+        rateLimiter.init();
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+
+        setDay(yesterday.toEpochDay(), Long.MAX_VALUE);
+        assertThat(rateLimiter.tryAcquire(2L, EndpointClass.GENERATION).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire(2L, EndpointClass.GENERATION).allowed()).isFalse();
+
+        setDay(yesterday.toEpochDay(), 0);
+        assertThat(rateLimiter.tryAcquire(2L, EndpointClass.GENERATION).allowed()).isTrue();
+    }
+
+    // RateLimiter.Day(epochDay, endMillis): endMillis = 0 заставляет пересчитать день при следующем запросе
+    private void setDay(long epochDay, long endMillis) throws Exception {
+        Class<?> dayClass = Class.forName(RateLimiter.class.getName() + "$Day");
+        Constructor<?> constructor = dayClass.getDeclaredConstructor(long.class, long.class);
+        constructor.setAccessible(true);
+        ReflectionTestUtils.setField(rateLimiter, "day", constructor.newInstance(epochDay, endMillis));
+    }
+}
@@ -0,0 +1,135 @@
+package com.miaai.language_helper.service;
+
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распознавание одной страницы: прежний путь PdfOcrService (новый Tesseract на страницу и doOCR),
+ * doOCR на переиспользуемом Tesseract и {@link TesseractEngine} с хэндлом из пула.
+ * Страница - синтетический скан упражнения в оттенках серого размером ocr.max-image-width x ocr.max-image-height.
+ * <p>
+ * Нужны модели eng и rus: путь задаётся -Dtesseract.datapath (по умолчанию как в application.properties).
+ * Запуск: main() из IDE или
+ * {@code mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test}, затем
+ * {@code java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main TesseractEngineBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TesseractEngineBenchmark {
+
+    private static final String TESSDATA_PATH =
+            System.getProperty("tesseract.datapath", "/usr/share/tesseract-ocr/4.00/tessdata");
+    private static final int DPI = 150;
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1200;
+
+    private TesseractEngine engine;
+    private Tesseract reusedTesseract;
+    private BufferedImage page;
+
+    @Setup
+    public void setUp() {
+        engine = new TesseractEngine();
+        ReflectionTestUtils.setField(engine, "tessdataPath", TESSDATA_PATH);
+        ReflectionTestUtils.setField(engine, "dpi", DPI);
+        ReflectionTestUtils.setField(engine, "poolSize", 1);
+        ReflectionTestUtils.setField(engine, "acquireTimeoutSeconds", 60L);
+        engine.init();
+
+        reusedTesseract = createTesseract();
+        page = renderPage();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        engine.shutdown();
+    }
+
+    // Как PdfOcrService до TesseractEngine: инициализация моделей на каждую страницу
+    @Benchmark
+    public String tess4jPerPage() throws TesseractException {
+        return createTesseract().doOCR(page);
+    }
+
+    // Без инициализации: остаётся только обёртка doOCR (копия растра через ImageIO и установка параметров на вызов)
+    @Benchmark
+    public String tess4jReused() throws TesseractException {
+        return reusedTesseract.doOCR(page);
+    }
+
+    @Benchmark
+    public String nativeEngine() throws TesseractException {
+        return engine.recognize(page);
+    }
+
+    // Те же настройки, что PdfOcrService.createTesseractInstance
+    private static Tesseract createTesseract() {
+        Tesseract tesseract = new Tesseract();
+        tesseract.setDatapath(TESSDATA_PATH);
+        tesseract.setLanguage("eng+rus");
+        tesseract.setVariable("OMP_THREAD_LIMIT", "1");
+        tesseract.setPageSegMode(6);
+        tesseract.setOcrEngineMode(1);
+        return tesseract;
+    }
+
+    private static BufferedImage renderPage() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setColor(Color.BLACK);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(new Font(Font.SERIF, Font.PLAIN, 28));
+            String[] lines = {
+                    "Exercise 3. Fill in the gaps with the correct form of the verb.",
+                    "1. She ______ (go) to school every day.",
+                    "2. They ______ (play) football on Sundays.",
+                    "3. My brother ______ (not like) coffee.",
+                    "4. We ______ (visit) our grandparents last summer.",
+                    "5. The train ______ (leave) at six o'clock tomorrow.",
+                    "Упражнение 4. Переведите предложения на английский язык.",
+                    "1. Я читаю эту книгу уже две недели.",
+                    "2. Мы встретились в парке вчера вечером.",
+            };
+            int y = 80;
+            for (String line : lines) {
+                g.drawString(line, 60, y);
+                y += 60;
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TesseractEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepeatedHeaderFooterRuleTest {
+
+    private final RepeatedHeaderFooterRule rule = new RepeatedHeaderFooterRule();
+
+    @Test
+    void removesHeaderAndFooterRepeatedOnPages() {
+        String text = page(1, "Chapter one starts here", "The cat sat on the mat")
+                + page(2, "Chapter two goes on", "The dog ran away")
+                + page(3, "Chapter three ends it", "Everyone went home");
+
+        String result = rule.apply(text);
+
+        assertThat(result).doesNotContain("English Reader").doesNotContain("Page 1 of 3");
+        assertThat(result).contains("Chapter one starts here", "The dog ran away", "Everyone went home");
+        assertThat(result).contains("--- Page 2 ---");
+    }
+
+    @Test
+    void keepsBodyLineEqualToFooter() {
+        // Такая же строка в теле страницы раньше затиралась вместо колонтитула (lines.indexOf)
+        String text = "English Reader\nIntro line\nPage 1 of 3\nBody line\nLast body line\nPage 1 of 3"
+                + "\n--- Page 1 ---\n"
+                + page(2, "Chapter two goes on", "The dog ran away")
+                + page(3, "Chapter three ends it", "Everyone went home");
+
+        String result = rule.apply(text);
+
+        String firstPage = result.substring(0, result.indexOf("--- Page 1 ---"));
+        assertThat(firstPage).isEqualTo("\nIntro line\nPage 1 of 3\nBody line\nLast body line\n\n");
+    }
+
+    @Test
+    void skipsShortPages() {
+        String text = "Title\nThanks\n--- Page 1 ---\n"
+                + "Title\nThanks\n--- Page 2 ---\n"
+                + "Title\nThanks\n--- Page 3 ---\n";
+
+        assertThat(rule.apply(text)).isEqualTo(text);
+    }
+
+    @Test
+    void keepsSinglePage() {
+        String text = page(1, "Only page", "Nothing to compare");
+
+        assertThat(rule.apply(text)).isEqualTo(text);
+    }
+
+    private static String page(int number, String first, String second) {
+        return "English Reader\n" + first + "\n" + second + "\nSome more text\nPage " + number + " of 3\n--- Page " + number + " ---\n";
+    }
+}
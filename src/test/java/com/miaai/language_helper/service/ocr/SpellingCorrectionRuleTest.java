@@ -0,0 +1,53 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpellingCorrectionRuleTest {
+
+    private SpellingCorrector spellingCorrector;
+    private SpellingCorrectionRule rule;
+
+    @BeforeEach
+    void setUp() {
+        spellingCorrector = mock(SpellingCorrector.class);
+        when(spellingCorrector.isEnabled()).thenReturn(true);
+        when(spellingCorrector.correct(anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).toUpperCase(Locale.ROOT));
+        rule = new SpellingCorrectionRule(spellingCorrector);
+    }
+
+    @Test
+    void correctsLatinWordsWithConfusedDigits() {
+        assertThat(rule.apply("the 5un is he1d")).isEqualTo("THE 5UN is HE1D");
+    }
+
+    @Test
+    void leavesNumbersAlone() {
+        assertThat(rule.apply("in 1510 and 2024, page 105")).isEqualTo("in 1510 AND 2024, PAGE 105");
+        verify(spellingCorrector, never()).correct("1510");
+        verify(spellingCorrector, never()).correct("105");
+    }
+
+    @Test
+    void skipsWordsGluedToOtherDigitsOrLetters() {
+        assertThat(rule.apply("abc2 привет")).isEqualTo("abc2 привет");
+    }
+
+    @Test
+    void doesNothingWhenDisabled() {
+        when(spellingCorrector.isEnabled()).thenReturn(false);
+
+        assertThat(rule.apply("he1d")).isEqualTo("he1d");
+        verify(spellingCorrector, never()).correct(anyString());
+    }
+}
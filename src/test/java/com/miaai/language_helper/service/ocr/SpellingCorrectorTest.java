@@ -0,0 +1,63 @@
+package com.miaai.language_helper.service.ocr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpellingCorrectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shippedDictionaryLoadsAndCorrectsDigitConfusions() {
+        SpellingCorrector corrector = load("classpath:ocr/frequency_dictionary_en.txt");
+
+        assertThat(corrector.isEnabled()).isTrue();
+        assertThat(corrector.correct("wh1ch")).isEqualTo("which");
+        assertThat(corrector.correct("Wh1ch")).isEqualTo("Which");
+    }
+
+    @Test
+    void wordWithoutCountIsWeightedByItsRank() throws IOException {
+        SpellingCorrector corrector = load(dictionary("# comment\nhead\nheld\n"));
+
+        assertThat(corrector.correct("he1d")).isEqualTo("head");
+    }
+
+    @Test
+    void countsFromSymSpellDictionaryTakePrecedenceOverOrder() throws IOException {
+        SpellingCorrector corrector = load(dictionary("head 5\nheld 10\n"));
+
+        assertThat(corrector.correct("he1d")).isEqualTo("held");
+    }
+
+    @Test
+    void equalCountsLeaveTokenUnchanged() throws IOException {
+        SpellingCorrector corrector = load(dictionary("head 5\nheld 5\n"));
+
+        assertThat(corrector.correct("he1d")).isEqualTo("he1d");
+    }
+
+    private String dictionary(String content) throws IOException {
+        Path file = tempDir.resolve("dictionary.txt");
+        Files.writeString(file, content);
+        return file.toUri().toString();
+    }
+
+    private static SpellingCorrector load(String location) {
+        SpellingCorrector corrector = new SpellingCorrector(new DefaultResourceLoader());
+        ReflectionTestUtils.setField(corrector, "enabled", true);
+        ReflectionTestUtils.setField(corrector, "dictionaryLocation", location);
+        ReflectionTestUtils.setField(corrector, "fullCorrectionMinWords", 20000);
+        corrector.loadDictionary();
+        return corrector;
+    }
+}
@@ -0,0 +1,64 @@
+-- Планы запросов поиска на данных search_seed.sql: psql -d bench -f src/test/resources/bench/search_explain.sql
+-- Текст запросов - ExerciseRepository.SEARCH_* с подставленными параметрами (limit 20).
+-- Ожидается bitmap index scan по idx_exercises_created_text в BitmapAnd с idx_exercises_user_id (свои)
+-- или idx_exercises_is_public (публичные), а не seq scan по exercises.
+
+-- Свои упражнения, редкое слово: 20 совпадений на весь набор
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT h.id, h.uuid, h.type, h.createdAt, h.contentPreview, h.questionsCount, h.isPublic, h.rank,
+       ts_headline('english', h.created_text, plainto_tsquery('english', 'word1234'),
+                   'MaxFragments=2, MinWords=5, MaxWords=20, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS highlight
+FROM (SELECT e.id AS id, e.uuid AS uuid, e.type AS type, e.created_at AS createdAt,
+             e.content_preview AS contentPreview, e.questions_count AS questionsCount, e.is_public AS isPublic,
+             e.created_text, ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'word1234')) AS rank
+      FROM exercises e
+      JOIN users u ON u.id = e.user_id
+      WHERE u.email = 'u235@bench.io'
+        AND to_tsvector('english', e.created_text) @@ plainto_tsquery('english', 'word1234')
+      ORDER BY rank DESC, id DESC LIMIT 20) h
+ORDER BY h.rank DESC, h.id DESC;
+
+-- Публичные, редкое слово
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT h.id, h.uuid, h.type, h.createdAt, h.contentPreview, h.questionsCount, h.isPublic, h.rank,
+       ts_headline('english', h.created_text, plainto_tsquery('english', 'word1230'),
+                   'MaxFragments=2, MinWords=5, MaxWords=20, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS highlight
+FROM (SELECT e.id AS id, e.uuid AS uuid, e.type AS type, e.created_at AS createdAt,
+             e.content_preview AS contentPreview, e.questions_count AS questionsCount, e.is_public AS isPublic,
+             e.created_text, ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'word1230')) AS rank
+      FROM exercises e
+      WHERE e.is_public = true
+        AND to_tsvector('english', e.created_text) @@ plainto_tsquery('english', 'word1230')
+      ORDER BY rank DESC, id DESC LIMIT 20) h
+ORDER BY h.rank DESC, h.id DESC;
+
+-- Публичные, частое слово (~62 тыс. совпадений по индексу, 12.5 тыс. публичных): время уходит на ts_rank по всем совпадениям
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT h.id, h.uuid, h.type, h.createdAt, h.contentPreview, h.questionsCount, h.isPublic, h.rank,
+       ts_headline('english', h.created_text, plainto_tsquery('english', 'river'),
+                   'MaxFragments=2, MinWords=5, MaxWords=20, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS highlight
+FROM (SELECT e.id AS id, e.uuid AS uuid, e.type AS type, e.created_at AS createdAt,
+             e.content_preview AS contentPreview, e.questions_count AS questionsCount, e.is_public AS isPublic,
+             e.created_text, ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'river')) AS rank
+      FROM exercises e
+      WHERE e.is_public = true
+        AND to_tsvector('english', e.created_text) @@ plainto_tsquery('english', 'river')
+      ORDER BY rank DESC, id DESC LIMIT 20) h
+ORDER BY h.rank DESC, h.id DESC;
+
+-- Следующая страница (keyset после последней строки первой): тот же план, фильтр по (rank, id)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT h.id, h.uuid, h.type, h.createdAt, h.contentPreview, h.questionsCount, h.isPublic, h.rank,
+       ts_headline('english', h.created_text, plainto_tsquery('english', 'river'),
+                   'MaxFragments=2, MinWords=5, MaxWords=20, StartSel=' || chr(2) || ', StopSel=' || chr(3)) AS highlight
+FROM (SELECT e.id AS id, e.uuid AS uuid, e.type AS type, e.created_at AS createdAt,
+             e.content_preview AS contentPreview, e.questions_count AS questionsCount, e.is_public AS isPublic,
+             e.created_text, ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'river')) AS rank
+      FROM exercises e
+      WHERE e.is_public = true
+        AND to_tsvector('english', e.created_text) @@ plainto_tsquery('english', 'river')
+        AND (ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'river')) < CAST(0.06079271 AS real)
+          OR (ts_rank(to_tsvector('english', e.created_text), plainto_tsquery('english', 'river')) = CAST(0.06079271 AS real)
+              AND e.id < 49920951))
+      ORDER BY rank DESC, id DESC LIMIT 20) h
+ORDER BY h.rank DESC, h.id DESC;
@@ -0,0 +1,30 @@
+-- Данные для замеров полнотекстового поиска (/api/history/search, /api/public/search).
+-- Запускать на пустой базе после schema.sql:
+--   createdb bench
+--   psql -d bench -f src/main/resources/schema.sql
+--   psql -d bench -f src/test/resources/bench/search_seed.sql
+-- 1000 пользователей, 1M упражнений (каждое десятое публичное).
+-- created_text: одно из 16 существительных (каждое в ~62 тыс. строк), один из 8 глаголов,
+-- редкое слово wordN (каждое в 20 строках) и md5, чтобы тексты не совпадали.
+
+INSERT INTO users (username, email, password)
+SELECT 'u' || g, 'u' || g || '@bench.io', 'x'
+FROM generate_series(1, 1000) g;
+
+INSERT INTO exercises (exercise_data, type, created_text, content_preview, questions_count, user_id, is_public)
+SELECT '{"type": "Fill The Gaps"}'::jsonb,
+       'Fill The Gaps',
+       txt,
+       left(txt, 100),
+       5,
+       (SELECT min(id) FROM users) + (g % 1000),
+       g % 10 = 0
+FROM (SELECT g,
+             (ARRAY['the', 'cat', 'dog', 'house', 'river', 'school', 'teacher', 'garden', 'window', 'travel',
+                    'weather', 'market', 'friend', 'family', 'holiday', 'kitchen'])[1 + (g % 16)]
+                 || ' ' || (ARRAY['walks', 'reads', 'swims', 'cooks', 'paints', 'sings', 'writes', 'plays'])[1 + (g % 8)]
+                 || ' word' || (g % 50000) || ' ' || md5(g::text) AS txt
+      FROM generate_series(1, 1000000) g) src;
+
+ANALYZE users;
+ANALYZE exercises;